@@ -1,23 +1,15 @@
 package com.quietinbox;
 
 import android.app.Application;
-import android.provider.Settings;
+import android.os.SystemClock;
 import android.util.Log;
 
-import com.quietinbox.database.AppDatabase;
-import com.quietinbox.database.ProfileEntity;
-import com.quietinbox.database.UserEntity;
-import com.quietinbox.utils.AdManager;
-import com.quietinbox.utils.BillingManager;
-import com.quietinbox.utils.ConfigLoader;
-
-import java.util.UUID;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import com.quietinbox.utils.AppStartup;
+import com.quietinbox.utils.Metrics;
 
 /**
  * Application class for QuietInbox
- * Initializes core components and handles first-run setup
+ * Starts core components in the background; first-run setup happens in AppStartup
  */
 public class QuietInboxApplication extends Application {
     private static final String TAG = "QuietInboxApp";
@@ -25,75 +17,20 @@ public class QuietInboxApplication extends Application {
     @Override
     public void onCreate() {
         super.onCreate();
+        long start = SystemClock.elapsedRealtime();
         Log.d(TAG, "QuietInbox Application starting...");
 
         try {
-            // Initialize configuration
-            ConfigLoader.getInstance(this);
-
-            // Initialize AdMob
-            AdManager adManager = AdManager.getInstance(this);
-            adManager.preloadInterstitialAd(this);
-
-            // Initialize Billing
-            BillingManager.getInstance(this);
-
-            // Initialize database and create default user if needed
-            initializeDatabase();
-
-            Log.d(TAG, "QuietInbox Application initialized successfully");
+            // Core components start in the background; the listener process only opens
+            // the database, ads and billing start when a UI component first needs them
+            AppStartup.getInstance(this).startCore();
 
         } catch (Exception e) {
             Log.e(TAG, "Error initializing application", e);
         }
-    }
-
-    private void initializeDatabase() {
-        ExecutorService executor = Executors.newSingleThreadExecutor();
-        executor.execute(() -> {
-            try {
-                AppDatabase db = AppDatabase.getInstance(this);
-
-                // Check if user exists
-                UserEntity user = db.userDao().getUser();
-                if (user == null) {
-                    // Create default user
-                    user = new UserEntity();
-                    user.deviceId = getDeviceId();
-                    user.email = null;
-                    user.isPro = false;
-                    user.createdAt = System.currentTimeMillis();
 
-                    long userId = db.userDao().insert(user);
-                    Log.d(TAG, "Created default user with ID: " + userId);
-
-                    // Create default profile
-                    ProfileEntity defaultProfile = new ProfileEntity();
-                    defaultProfile.name = "Default";
-                    defaultProfile.quietHoursStart = "22:00";
-                    defaultProfile.quietHoursEnd = "07:00";
-                    defaultProfile.rulesJson = "{}";
-                    defaultProfile.isActive = true;
-
-                    long profileId = db.profileDao().insert(defaultProfile);
-                    Log.d(TAG, "Created default profile with ID: " + profileId);
-                }
-
-            } catch (Exception e) {
-                Log.e(TAG, "Error initializing database", e);
-            }
-        });
-    }
-
-    private String getDeviceId() {
-        try {
-            String androidId = Settings.Secure.getString(
-                getContentResolver(),
-                Settings.Secure.ANDROID_ID
-            );
-            return androidId != null ? androidId : UUID.randomUUID().toString();
-        } catch (Exception e) {
-            return UUID.randomUUID().toString();
-        }
+        long elapsed = SystemClock.elapsedRealtime() - start;
+        Metrics.getInstance().record("startup.application", elapsed);
+        Log.d(TAG, "QuietInbox Application onCreate took " + elapsed + "ms");
     }
 }
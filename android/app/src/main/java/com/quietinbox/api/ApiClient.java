@@ -3,6 +3,10 @@ package com.quietinbox.api;
 import android.content.Context;
 import android.util.Log;
 
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.quietinbox.BuildConfig;
+import com.quietinbox.models.SyncItem;
 import com.quietinbox.utils.ConfigLoader;
 
 import java.util.concurrent.TimeUnit;
@@ -17,6 +21,7 @@ import retrofit2.converter.gson.GsonConverterFactory;
  */
 public class ApiClient {
     private static final String TAG = "ApiClient";
+    private static final int MAX_LOG_LINE = 2048;
     private static ApiClient instance;
     private final ApiService apiService;
     private final String baseUrl;
@@ -25,23 +30,42 @@ public class ApiClient {
         ConfigLoader config = ConfigLoader.getInstance(context);
         this.baseUrl = config.getBackendUrl();
 
-        // Logging interceptor
-        HttpLoggingInterceptor logging = new HttpLoggingInterceptor();
-        logging.setLevel(HttpLoggingInterceptor.Level.BODY);
+        // Logging interceptor: off in release, headers only unless debug logging is enabled,
+        // and every line capped so large sync payloads never flood logcat
+        HttpLoggingInterceptor logging = new HttpLoggingInterceptor(message ->
+            Log.d(TAG, message.length() > MAX_LOG_LINE
+                ? message.substring(0, MAX_LOG_LINE) + "… (" + message.length() + " chars)"
+                : message));
+        if (!BuildConfig.DEBUG) {
+            logging.setLevel(HttpLoggingInterceptor.Level.NONE);
+        } else if (config.isDebugLoggingEnabled()) {
+            logging.setLevel(HttpLoggingInterceptor.Level.BODY);
+        } else {
+            logging.setLevel(HttpLoggingInterceptor.Level.HEADERS);
+        }
 
-        // OkHttp client with timeouts
+        // OkHttp client with timeouts; logging runs before compression so it sees plain bodies
         OkHttpClient client = new OkHttpClient.Builder()
             .connectTimeout(config.getConnectTimeout(), TimeUnit.SECONDS)
             .readTimeout(config.getReadTimeout(), TimeUnit.SECONDS)
             .writeTimeout(config.getReadTimeout(), TimeUnit.SECONDS)
+            .eventListenerFactory(NetworkMetricsListener.factory(
+                config.isSlowCallTraceEnabled() ? config.getSlowCallThresholdMs() : 0))
             .addInterceptor(logging)
+            .addInterceptor(new GzipRequestInterceptor())
             .build();
 
-        // Retrofit instance
+        // Sync items use a hand-written adapter; everything else stays reflective
+        Gson gson = new GsonBuilder()
+            .registerTypeHierarchyAdapter(SyncItem.class, new SyncItemAdapter())
+            .create();
+
+        // Retrofit instance: request bodies stream into the socket, responses go through Gson
         Retrofit retrofit = new Retrofit.Builder()
             .baseUrl(baseUrl)
             .client(client)
-            .addConverterFactory(GsonConverterFactory.create())
+            .addConverterFactory(new StreamingJsonConverterFactory(gson))
+            .addConverterFactory(GsonConverterFactory.create(gson))
             .build();
 
         apiService = retrofit.create(ApiService.class);
@@ -47,6 +47,12 @@ public interface ApiService {
         @Body Profile profile
     );
 
+    @POST("v1/profile/batch")
+    Call<BatchResponse> batchProfiles(
+        @Header("Authorization") String token,
+        @Body ProfileBatchRequest request
+    );
+
     // VIPs
     @GET("v1/vip")
     Call<List<VIP>> getVIPs(@Header("Authorization") String token);
@@ -57,6 +63,19 @@ public interface ApiService {
         @Body VIP vip
     );
 
+    @POST("v1/vip/batch")
+    Call<BatchResponse> batchVIPs(
+        @Header("Authorization") String token,
+        @Body VIPBatchRequest request
+    );
+
+    @PUT("v1/vip/{id}")
+    Call<VIP> updateVIP(
+        @Header("Authorization") String token,
+        @Path("id") long id,
+        @Body VIP vip
+    );
+
     @DELETE("v1/vip/{id}")
     Call<Void> deleteVIP(
         @Header("Authorization") String token,
@@ -67,13 +86,15 @@ public interface ApiService {
     @POST("v1/sync/push")
     Call<SyncResponse> pushSync(
         @Header("Authorization") String token,
+        @Header("Idempotency-Key") String idempotencyKey,
         @Body SyncPushRequest request
     );
 
     @GET("v1/sync/pull")
     Call<SyncPullResponse> pullSync(
         @Header("Authorization") String token,
-        @Query("since") String since
+        @Query("cursor") String cursor,
+        @Query("limit") int limit
     );
 
     // Recommendations
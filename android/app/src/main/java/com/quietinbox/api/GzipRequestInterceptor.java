@@ -0,0 +1,73 @@
+package com.quietinbox.api;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+/**
+ * Gzips sync request bodies once the server has advertised support
+ * The server sends X-Accept-Encoding: gzip on every response; until one has been
+ * seen, bodies go out uncompressed so older servers keep working.
+ * Compression streams into the socket, the compressed body is never buffered whole.
+ */
+public class GzipRequestInterceptor implements Interceptor {
+    static final String ACCEPT_HEADER = "X-Accept-Encoding";
+
+    private final AtomicBoolean serverAcceptsGzip = new AtomicBoolean(false);
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        RequestBody body = request.body();
+
+        if (serverAcceptsGzip.get() && body != null && isCompressible(request)) {
+            request = request.newBuilder()
+                .header("Content-Encoding", "gzip")
+                .method(request.method(), gzip(body))
+                .build();
+        }
+
+        Response response = chain.proceed(request);
+        if ("gzip".equalsIgnoreCase(response.header(ACCEPT_HEADER))) {
+            serverAcceptsGzip.set(true);
+        }
+        return response;
+    }
+
+    private static boolean isCompressible(Request request) {
+        if (request.header("Content-Encoding") != null) {
+            return false;
+        }
+        String path = request.url().encodedPath();
+        return path.startsWith("/v1/sync/") || path.endsWith("/batch");
+    }
+
+    private static RequestBody gzip(RequestBody body) {
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return body.contentType();
+            }
+
+            @Override
+            public long contentLength() {
+                return -1; // Unknown until compressed, sent chunked
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                BufferedSink gzipSink = Okio.buffer(new GzipSink(sink));
+                body.writeTo(gzipSink);
+                gzipSink.close();
+            }
+        };
+    }
+}
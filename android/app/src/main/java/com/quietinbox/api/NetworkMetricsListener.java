@@ -0,0 +1,196 @@
+package com.quietinbox.api;
+
+import android.util.Log;
+
+import com.quietinbox.utils.Metrics;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.HttpUrl;
+import okhttp3.Protocol;
+import okhttp3.Request;
+
+/**
+ * Per-call network timings fed into the app's metrics histograms
+ * Records DNS, connect, TLS, request write, time to first byte and body read
+ * per endpoint (method plus path with numeric IDs folded), request and response
+ * sizes, and how often a pooled connection was reused.
+ * With slow-call tracing on, calls over the threshold log their full phase breakdown.
+ */
+public class NetworkMetricsListener extends EventListener {
+    private static final String TAG = "NetworkMetrics";
+
+    private final Metrics metrics;
+    private final String endpoint;
+    private final long slowCallMs;
+
+    private final long callStart;
+    private long dnsStart;
+    private long connectStart;
+    private long secureConnectStart;
+    private long requestStart;
+    private long requestEnd;
+    private long responseBodyStart;
+
+    private long dnsMs = -1;
+    private long connectMs = -1;
+    private long tlsMs = -1;
+    private long writeMs = -1;
+    private long ttfbMs = -1;
+    private long readMs = -1;
+    private long requestBytes;
+    private long responseBytes;
+    private boolean connected;
+
+    /**
+     * @param slowCallMs trace calls slower than this, or 0 to disable tracing
+     */
+    public static Factory factory(long slowCallMs) {
+        return call -> new NetworkMetricsListener(call.request(), slowCallMs);
+    }
+
+    private NetworkMetricsListener(Request request, long slowCallMs) {
+        this.metrics = Metrics.getInstance();
+        this.endpoint = endpointName(request);
+        this.slowCallMs = slowCallMs;
+        this.callStart = System.nanoTime();
+    }
+
+    @Override
+    public void dnsStart(Call call, String domainName) {
+        dnsStart = System.nanoTime();
+    }
+
+    @Override
+    public void dnsEnd(Call call, String domainName, List<InetAddress> addresses) {
+        dnsMs = record("dns", dnsStart);
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress address, Proxy proxy) {
+        connectStart = System.nanoTime();
+        connected = true;
+    }
+
+    @Override
+    public void secureConnectStart(Call call) {
+        secureConnectStart = System.nanoTime();
+    }
+
+    @Override
+    public void secureConnectEnd(Call call, Handshake handshake) {
+        tlsMs = record("tls", secureConnectStart);
+    }
+
+    @Override
+    public void connectEnd(Call call, InetSocketAddress address, Proxy proxy, Protocol protocol) {
+        connectMs = record("connect", connectStart);
+    }
+
+    @Override
+    public void connectionAcquired(Call call, Connection connection) {
+        // No connectStart before acquiring means the pool supplied the connection
+        metrics.increment(connected ? "http.connection.new" : "http.connection.reused");
+    }
+
+    @Override
+    public void requestHeadersStart(Call call) {
+        requestStart = System.nanoTime();
+    }
+
+    @Override
+    public void requestHeadersEnd(Call call, Request request) {
+        requestEnd = System.nanoTime();
+    }
+
+    @Override
+    public void requestBodyEnd(Call call, long byteCount) {
+        requestEnd = System.nanoTime();
+        requestBytes = byteCount;
+        metrics.record("http." + endpoint + ".request_bytes", byteCount);
+    }
+
+    @Override
+    public void responseHeadersStart(Call call) {
+        writeMs = elapsedMs(requestStart, requestEnd);
+        metrics.record("http." + endpoint + ".write", writeMs);
+        ttfbMs = record("ttfb", requestEnd);
+    }
+
+    @Override
+    public void responseBodyStart(Call call) {
+        responseBodyStart = System.nanoTime();
+    }
+
+    @Override
+    public void responseBodyEnd(Call call, long byteCount) {
+        readMs = record("read", responseBodyStart);
+        responseBytes = byteCount;
+        metrics.record("http." + endpoint + ".response_bytes", byteCount);
+    }
+
+    @Override
+    public void callEnd(Call call) {
+        finish(null);
+    }
+
+    @Override
+    public void callFailed(Call call, IOException e) {
+        metrics.increment("http." + endpoint + ".failed");
+        finish(e);
+    }
+
+    private void finish(IOException error) {
+        long totalMs = record("total", callStart);
+        if (slowCallMs > 0 && totalMs >= slowCallMs) {
+            Log.w(TAG, "Slow call " + endpoint + ": total=" + totalMs + "ms dns=" + dnsMs
+                + " connect=" + connectMs + " tls=" + tlsMs + " write=" + writeMs
+                + " ttfb=" + ttfbMs + " read=" + readMs + " reused=" + !connected
+                + " sent=" + requestBytes + "B received=" + responseBytes + "B"
+                + (error != null ? " error=" + error : ""));
+        }
+    }
+
+    private long record(String phase, long startNanos) {
+        long ms = elapsedMs(startNanos, System.nanoTime());
+        metrics.record("http." + endpoint + "." + phase, ms);
+        return ms;
+    }
+
+    private static long elapsedMs(long startNanos, long endNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(endNanos - startNanos);
+    }
+
+    /**
+     * "GET /v1/vip/{id}" style name, so per-entity URLs share one set of histograms
+     */
+    static String endpointName(Request request) {
+        HttpUrl url = request.url();
+        StringBuilder name = new StringBuilder(request.method()).append(' ');
+        for (String segment : url.encodedPathSegments()) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            name.append('/').append(isNumeric(segment) ? "{id}" : segment);
+        }
+        return name.toString();
+    }
+
+    private static boolean isNumeric(String segment) {
+        for (int i = 0; i < segment.length(); i++) {
+            if (!Character.isDigit(segment.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,68 @@
+package com.quietinbox.api;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+
+/**
+ * Request bodies that encode straight into OkHttp's sink while the request is written
+ * GsonConverterFactory encodes the whole body into a buffer first; here nothing
+ * larger than the writer's buffer is held, and a retried or logged request simply
+ * encodes again. Responses are left to the next converter factory.
+ */
+public class StreamingJsonConverterFactory extends Converter.Factory {
+    private static final MediaType JSON = MediaType.get("application/json; charset=UTF-8");
+
+    private final Gson gson;
+
+    public StreamingJsonConverterFactory(Gson gson) {
+        this.gson = gson;
+    }
+
+    @Override
+    public Converter<?, RequestBody> requestBodyConverter(Type type, Annotation[] parameterAnnotations,
+                                                          Annotation[] methodAnnotations, Retrofit retrofit) {
+        TypeAdapter<?> adapter = gson.getAdapter(TypeToken.get(type));
+        return value -> new StreamingBody<>(gson, adapter, value);
+    }
+
+    private static final class StreamingBody<T> extends RequestBody {
+        private final Gson gson;
+        private final TypeAdapter<T> adapter;
+        private final T value;
+
+        @SuppressWarnings("unchecked")
+        StreamingBody(Gson gson, TypeAdapter<?> adapter, Object value) {
+            this.gson = gson;
+            this.adapter = (TypeAdapter<T>) adapter;
+            this.value = (T) value;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return JSON;
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            JsonWriter writer = gson.newJsonWriter(
+                new OutputStreamWriter(sink.outputStream(), StandardCharsets.UTF_8));
+            adapter.write(writer, value);
+            // Flush the writer's buffer into the sink without closing the sink
+            writer.flush();
+        }
+    }
+}
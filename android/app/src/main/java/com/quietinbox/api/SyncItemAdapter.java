@@ -0,0 +1,155 @@
+package com.quietinbox.api;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.quietinbox.models.SyncItem;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hand-written JSON adapter for sync push items
+ * Writes field by field, so encoding a push allocates no reflective accessors or
+ * intermediate maps. Items normally only travel to the server; reading goes
+ * through a JSON tree and exists so the format round-trips in tests and logs.
+ */
+public class SyncItemAdapter extends TypeAdapter<SyncItem> {
+
+    @Override
+    public void write(JsonWriter out, SyncItem item) throws IOException {
+        if (item == null) {
+            out.nullValue();
+            return;
+        }
+
+        out.beginObject();
+        out.name("local_id").value(item.local_id);
+        out.name("type").value(item.type);
+        out.name("data");
+        out.beginObject();
+        if (item instanceof SyncItem.Notification) {
+            writeNotification(out, (SyncItem.Notification) item);
+        } else if (item instanceof SyncItem.NotificationMeta) {
+            writeMeta(out, (SyncItem.NotificationMeta) item);
+        } else if (item instanceof SyncItem.NotificationHistogram) {
+            writeHistogram(out, (SyncItem.NotificationHistogram) item);
+        } else if (item instanceof SyncItem.Dismissal) {
+            writeDismissal(out, (SyncItem.Dismissal) item);
+        } else {
+            throw new IllegalArgumentException("Unknown sync item " + item.getClass().getName());
+        }
+        out.endObject();
+        out.endObject();
+    }
+
+    private static void writeNotification(JsonWriter out, SyncItem.Notification item) throws IOException {
+        out.name("app_package").value(item.app_package);
+        out.name("title").value(item.title);
+        out.name("text").value(item.text);
+        out.name("action").value(item.action);
+        out.name("confidence").value(item.confidence);
+        out.name("received_at").value(item.received_at);
+        out.name("repeat_count").value(item.repeat_count);
+    }
+
+    private static void writeMeta(JsonWriter out, SyncItem.NotificationMeta item) throws IOException {
+        out.name("app_package").value(item.app_package);
+        out.name("received_at").value(item.received_at);
+        out.name("action").value(item.action);
+        out.name("confidence").value(item.confidence);
+        out.name("sender_hash").value(item.sender_hash);
+        out.name("repeat_count").value(item.repeat_count);
+    }
+
+    private static void writeHistogram(JsonWriter out, SyncItem.NotificationHistogram item) throws IOException {
+        out.name("app_package").value(item.app_package);
+        out.name("hour_start").value(item.hour_start);
+        out.name("first_local_id").value(item.first_local_id);
+        out.name("count").value(item.count);
+        out.name("vip_count").value(item.vip_count);
+        out.name("confidence_sum").value(item.confidence_sum);
+        out.name("repeat_count").value(item.repeat_count);
+        out.name("actions");
+        out.beginObject();
+        if (item.actions != null) {
+            for (Map.Entry<String, Integer> entry : item.actions.entrySet()) {
+                out.name(entry.getKey()).value(entry.getValue());
+            }
+        }
+        out.endObject();
+    }
+
+    private static void writeDismissal(JsonWriter out, SyncItem.Dismissal item) throws IOException {
+        out.name("notification_local_id").value(item.notification_local_id);
+        out.name("dismissed_at").value(item.dismissed_at);
+    }
+
+    @Override
+    public SyncItem read(JsonReader in) throws IOException {
+        JsonElement element = JsonParser.parseReader(in);
+        if (element.isJsonNull()) {
+            return null;
+        }
+        JsonObject object = element.getAsJsonObject();
+        String localId = optString(object, "local_id");
+        String type = optString(object, "type");
+        JsonObject data = object.has("data") ? object.getAsJsonObject("data") : new JsonObject();
+
+        if ("notification".equals(type)) {
+            SyncItem.Notification item = new SyncItem.Notification(localId);
+            item.app_package = optString(data, "app_package");
+            item.title = optString(data, "title");
+            item.text = optString(data, "text");
+            item.action = optString(data, "action");
+            item.confidence = data.get("confidence").getAsFloat();
+            item.received_at = data.get("received_at").getAsLong();
+            item.repeat_count = optInt(data, "repeat_count");
+            return item;
+        } else if ("notification_meta".equals(type)) {
+            SyncItem.NotificationMeta item = new SyncItem.NotificationMeta(localId);
+            item.app_package = optString(data, "app_package");
+            item.received_at = data.get("received_at").getAsLong();
+            item.action = optString(data, "action");
+            item.confidence = data.get("confidence").getAsFloat();
+            item.sender_hash = optString(data, "sender_hash");
+            item.repeat_count = optInt(data, "repeat_count");
+            return item;
+        } else if ("notification_histogram".equals(type)) {
+            SyncItem.NotificationHistogram item = new SyncItem.NotificationHistogram(localId);
+            item.app_package = optString(data, "app_package");
+            item.hour_start = data.get("hour_start").getAsLong();
+            item.first_local_id = data.get("first_local_id").getAsLong();
+            item.count = data.get("count").getAsInt();
+            item.vip_count = data.get("vip_count").getAsInt();
+            item.confidence_sum = data.get("confidence_sum").getAsFloat();
+            item.repeat_count = optInt(data, "repeat_count");
+            item.actions = new HashMap<>();
+            for (Map.Entry<String, JsonElement> entry : data.getAsJsonObject("actions").entrySet()) {
+                item.actions.put(entry.getKey(), entry.getValue().getAsInt());
+            }
+            return item;
+        } else if ("dismissal".equals(type)) {
+            SyncItem.Dismissal item = new SyncItem.Dismissal(localId);
+            item.notification_local_id = data.get("notification_local_id").getAsLong();
+            item.dismissed_at = data.get("dismissed_at").getAsLong();
+            return item;
+        }
+        throw new JsonParseException("Unknown sync item type " + type);
+    }
+
+    private static String optString(JsonObject object, String name) {
+        JsonElement value = object.get(name);
+        return value != null && !value.isJsonNull() ? value.getAsString() : null;
+    }
+
+    private static int optInt(JsonObject object, String name) {
+        JsonElement value = object.get(name);
+        return value != null && !value.isJsonNull() ? value.getAsInt() : 0;
+    }
+}
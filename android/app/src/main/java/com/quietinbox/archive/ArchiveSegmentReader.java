@@ -0,0 +1,115 @@
+package com.quietinbox.archive;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming reader for one archive segment
+ * Uses the sparse block index to skip blocks outside the requested time range
+ * and decodes one block at a time
+ */
+public class ArchiveSegmentReader implements Closeable {
+    // Deflate cannot expand its input by more than about 1032x
+    private static final long MAX_DEFLATE_RATIO = 1032;
+
+    private final RandomAccessFile file;
+    private final List<ArchiveSegmentWriter.BlockIndexEntry> index;
+    private final long maxRowId;
+    private final long cutoff;
+
+    public ArchiveSegmentReader(File segment) throws IOException {
+        this.file = new RandomAccessFile(segment, "r");
+        try {
+            if (file.length() < 4 + ArchiveSegmentWriter.FOOTER_SIZE || file.readInt() != ArchiveSegmentWriter.MAGIC) {
+                throw new IOException("Not an archive segment: " + segment.getName());
+            }
+
+            file.seek(file.length() - ArchiveSegmentWriter.FOOTER_SIZE);
+            long indexOffset = file.readLong();
+            this.maxRowId = file.readLong();
+            this.cutoff = file.readLong();
+            int blockCount = file.readInt();
+            if (file.readInt() != ArchiveSegmentWriter.MAGIC) {
+                throw new IOException("Incomplete archive segment: " + segment.getName());
+            }
+
+            file.seek(indexOffset);
+            if (file.readInt() != blockCount) {
+                throw new IOException("Corrupt archive index: " + segment.getName());
+            }
+            index = new ArrayList<>(blockCount);
+            for (int i = 0; i < blockCount; i++) {
+                index.add(new ArchiveSegmentWriter.BlockIndexEntry(
+                    file.readLong(), file.readLong(), file.readLong(), file.readInt(), file.readInt()));
+            }
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    public long getMaxRowId() {
+        return maxRowId;
+    }
+
+    public long getCutoff() {
+        return cutoff;
+    }
+
+    /**
+     * Stream rows with fromTime <= receivedAt < toTime to the visitor
+     * Returns false if the visitor stopped the scan early
+     */
+    public boolean scan(long fromTime, long toTime, NotificationArchive.Visitor visitor) throws IOException {
+        for (ArchiveSegmentWriter.BlockIndexEntry entry : index) {
+            if (entry.maxTime < fromTime || entry.minTime >= toTime) {
+                continue;
+            }
+
+            file.seek(entry.offset);
+            int count = file.readInt();
+            if (count < 0) {
+                throw new IOException("Corrupt archive block row count " + count);
+            }
+            String[] packages = ColumnCodec.decodeDictionary(readColumn(), count);
+            long[] times = ColumnCodec.decodeTimes(readColumn(), count);
+            String[] actions = ColumnCodec.decodeDictionary(readColumn(), count);
+            String[] titles = ColumnCodec.decodeStrings(readColumn(), count);
+            String[] texts = ColumnCodec.decodeStrings(readColumn(), count);
+
+            for (int i = 0; i < count; i++) {
+                if (times[i] < fromTime || times[i] >= toTime) {
+                    continue;
+                }
+                ArchivedNotification row = new ArchivedNotification(
+                    packages[i], times[i], actions[i], titles[i], texts[i]);
+                if (!visitor.visit(row)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private byte[] readColumn() throws IOException {
+        int rawLength = file.readInt();
+        int compressedLength = file.readInt();
+        if (rawLength < 0 || compressedLength < 0
+                || compressedLength > file.length() - file.getFilePointer()
+                || rawLength > (compressedLength + 1L) * MAX_DEFLATE_RATIO) {
+            throw new IOException("Corrupt archive column header");
+        }
+        byte[] compressed = new byte[compressedLength];
+        file.readFully(compressed);
+        return ColumnCodec.decompress(compressed, rawLength);
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
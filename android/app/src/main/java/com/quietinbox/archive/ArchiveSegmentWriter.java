@@ -0,0 +1,184 @@
+package com.quietinbox.archive;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes one append-only archive segment
+ *
+ * Layout: magic, blocks, sparse block index, fixed-size footer.
+ * Each block holds up to BLOCK_ROWS rows stored column by column, each column deflated.
+ * The segment is written to a temp file and only becomes visible on commit(),
+ * published as segment-MINTIME-MAXTIME-MAXROWID.qia so readers can skip
+ * whole segments by name.
+ */
+public class ArchiveSegmentWriter implements Closeable {
+    static final int MAGIC = 0x51494131; // "QIA1"
+    static final int FOOTER_SIZE = 8 + 8 + 8 + 4 + 4;
+    static final int BLOCK_ROWS = 1024;
+    static final String SEGMENT_PREFIX = "segment-";
+    static final String SEGMENT_SUFFIX = ".qia";
+
+    private final File directory;
+    private final File tempFile;
+    private final FileOutputStream fileOut;
+    private final DataOutputStream out;
+    private final List<BlockIndexEntry> index = new ArrayList<>();
+
+    private final String[] packages = new String[BLOCK_ROWS];
+    private final long[] times = new long[BLOCK_ROWS];
+    private final String[] actions = new String[BLOCK_ROWS];
+    private final String[] titles = new String[BLOCK_ROWS];
+    private final String[] texts = new String[BLOCK_ROWS];
+    private int buffered;
+
+    private long position;
+    private long rowCount;
+    private long minTime = Long.MAX_VALUE;
+    private long maxTime = Long.MIN_VALUE;
+    private boolean committed;
+
+    public ArchiveSegmentWriter(File directory) throws IOException {
+        this.directory = directory;
+        this.tempFile = new File(directory, SEGMENT_PREFIX + System.nanoTime() + ".tmp");
+        this.fileOut = new FileOutputStream(tempFile);
+        this.out = new DataOutputStream(new BufferedOutputStream(fileOut, 64 * 1024));
+        out.writeInt(MAGIC);
+        position = 4;
+    }
+
+    public void append(ArchivedNotification row) throws IOException {
+        packages[buffered] = row.appPackage;
+        times[buffered] = row.receivedAt;
+        actions[buffered] = row.action;
+        titles[buffered] = row.title;
+        texts[buffered] = row.text;
+        buffered++;
+        if (buffered == BLOCK_ROWS) {
+            flushBlock();
+        }
+    }
+
+    public long getRowCount() {
+        return rowCount + buffered;
+    }
+
+    public long getMinTime() {
+        return minTime;
+    }
+
+    public long getMaxTime() {
+        return maxTime;
+    }
+
+    /**
+     * Finish the segment and atomically publish it under its final name
+     *
+     * @param maxRowId highest live-table row ID contained in this segment
+     * @param cutoff   received_at cutoff the rows were selected with
+     */
+    public File commit(long maxRowId, long cutoff) throws IOException {
+        flushBlock();
+
+        long indexOffset = position;
+        out.writeInt(index.size());
+        for (BlockIndexEntry entry : index) {
+            out.writeLong(entry.minTime);
+            out.writeLong(entry.maxTime);
+            out.writeLong(entry.offset);
+            out.writeInt(entry.length);
+            out.writeInt(entry.rowCount);
+        }
+
+        out.writeLong(indexOffset);
+        out.writeLong(maxRowId);
+        out.writeLong(cutoff);
+        out.writeInt(index.size());
+        out.writeInt(MAGIC);
+        out.flush();
+        fileOut.getFD().sync();
+        out.close();
+
+        File target = new File(directory,
+            SEGMENT_PREFIX + minTime + "-" + maxTime + "-" + maxRowId + SEGMENT_SUFFIX);
+        if (!tempFile.renameTo(target)) {
+            throw new IOException("Could not publish archive segment " + target.getName());
+        }
+        committed = true;
+        return target;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!committed) {
+            out.close();
+            tempFile.delete();
+        }
+    }
+
+    private void flushBlock() throws IOException {
+        if (buffered == 0) {
+            return;
+        }
+
+        long blockMin = Long.MAX_VALUE;
+        long blockMax = Long.MIN_VALUE;
+        for (int i = 0; i < buffered; i++) {
+            blockMin = Math.min(blockMin, times[i]);
+            blockMax = Math.max(blockMax, times[i]);
+        }
+
+        long blockOffset = position;
+        int length = 4;
+        out.writeInt(buffered);
+        length += writeColumn(ColumnCodec.encodeDictionary(packages, buffered));
+        length += writeColumn(ColumnCodec.encodeTimes(times, buffered));
+        length += writeColumn(ColumnCodec.encodeDictionary(actions, buffered));
+        length += writeColumn(ColumnCodec.encodeStrings(titles, buffered));
+        length += writeColumn(ColumnCodec.encodeStrings(texts, buffered));
+
+        index.add(new BlockIndexEntry(blockMin, blockMax, blockOffset, length, buffered));
+        position += length;
+        rowCount += buffered;
+        minTime = Math.min(minTime, blockMin);
+        maxTime = Math.max(maxTime, blockMax);
+
+        for (int i = 0; i < buffered; i++) {
+            packages[i] = null;
+            actions[i] = null;
+            titles[i] = null;
+            texts[i] = null;
+        }
+        buffered = 0;
+    }
+
+    private int writeColumn(byte[] raw) throws IOException {
+        byte[] compressed = ColumnCodec.compress(raw);
+        out.writeInt(raw.length);
+        out.writeInt(compressed.length);
+        out.write(compressed);
+        return 8 + compressed.length;
+    }
+
+    static final class BlockIndexEntry {
+        final long minTime;
+        final long maxTime;
+        final long offset;
+        final int length;
+        final int rowCount;
+
+        BlockIndexEntry(long minTime, long maxTime, long offset, int length, int rowCount) {
+            this.minTime = minTime;
+            this.maxTime = maxTime;
+            this.offset = offset;
+            this.length = length;
+            this.rowCount = rowCount;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.quietinbox.archive;
+
+/**
+ * A notification row as stored in a cold archive segment
+ */
+public class ArchivedNotification {
+    public String appPackage;
+    public long receivedAt;
+    public String action; // NOW, LATER, NEVER
+    public String title;
+    public String text;
+
+    public ArchivedNotification() {}
+
+    public ArchivedNotification(String appPackage, long receivedAt, String action, String title, String text) {
+        this.appPackage = appPackage;
+        this.receivedAt = receivedAt;
+        this.action = action;
+        this.title = title;
+        this.text = text;
+    }
+}
@@ -0,0 +1,224 @@
+package com.quietinbox.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Column encodings used inside archive blocks
+ * Times are zigzag delta varints, low-cardinality strings are dictionary coded,
+ * free text is length-prefixed UTF-8, and every column is deflated on its own
+ */
+final class ColumnCodec {
+
+    private ColumnCodec() {}
+
+    // ---- Encoding ----
+
+    static byte[] encodeTimes(long[] times, int count) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(count * 3);
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            writeVarLong(out, zigzag(times[i] - previous));
+            previous = times[i];
+        }
+        return out.toByteArray();
+    }
+
+    static byte[] encodeDictionary(String[] values, int count) {
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<String> entries = new ArrayList<>();
+        int[] codes = new int[count];
+        for (int i = 0; i < count; i++) {
+            String value = values[i] != null ? values[i] : "";
+            Integer code = dictionary.get(value);
+            if (code == null) {
+                code = entries.size();
+                dictionary.put(value, code);
+                entries.add(value);
+            }
+            codes[i] = code;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarLong(out, entries.size());
+        for (String entry : entries) {
+            writeString(out, entry);
+        }
+        for (int i = 0; i < count; i++) {
+            writeVarLong(out, codes[i]);
+        }
+        return out.toByteArray();
+    }
+
+    static byte[] encodeStrings(String[] values, int count) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < count; i++) {
+            writeString(out, values[i] != null ? values[i] : "");
+        }
+        return out.toByteArray();
+    }
+
+    static byte[] compress(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 2));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    // ---- Decoding ----
+
+    static long[] decodeTimes(byte[] data, int count) throws IOException {
+        Cursor cursor = new Cursor(data);
+        long[] times = new long[count];
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            previous += unzigzag(cursor.readVarLong());
+            times[i] = previous;
+        }
+        return times;
+    }
+
+    static String[] decodeDictionary(byte[] data, int count) throws IOException {
+        Cursor cursor = new Cursor(data);
+        String[] entries = new String[cursor.readLength()];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = cursor.readString();
+        }
+        String[] values = new String[count];
+        for (int i = 0; i < count; i++) {
+            long code = cursor.readVarLong();
+            if (code < 0 || code >= entries.length) {
+                throw new IOException("Corrupt archive dictionary code " + code);
+            }
+            values[i] = entries[(int) code];
+        }
+        return values;
+    }
+
+    static String[] decodeStrings(byte[] data, int count) throws IOException {
+        Cursor cursor = new Cursor(data);
+        String[] values = new String[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = cursor.readString();
+        }
+        return values;
+    }
+
+    static byte[] decompress(byte[] compressed, int rawLength) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] raw = new byte[rawLength];
+            int offset = 0;
+            while (offset < rawLength) {
+                int n = inflater.inflate(raw, offset, rawLength - offset);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    break;
+                }
+                offset += n;
+            }
+            if (offset != rawLength) {
+                throw new IOException("Truncated archive column");
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt archive column", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // ---- Primitives ----
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Bounds-checked reader; malformed input surfaces as IOException, never as a runtime exception
+     */
+    private static final class Cursor {
+        // A 64-bit varint never needs more than ten bytes
+        private static final int MAX_VARLONG_SHIFT = 63;
+
+        private final byte[] data;
+        private int position;
+
+        Cursor(byte[] data) {
+            this.data = data;
+        }
+
+        long readVarLong() throws IOException {
+            long value = 0;
+            int shift = 0;
+            while (true) {
+                if (position >= data.length) {
+                    throw new IOException("Truncated archive varint");
+                }
+                if (shift > MAX_VARLONG_SHIFT) {
+                    throw new IOException("Overlong archive varint");
+                }
+                byte b = data[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+                shift += 7;
+            }
+        }
+
+        /**
+         * A count or byte length, which can never exceed the bytes left to read
+         */
+        int readLength() throws IOException {
+            long length = readVarLong();
+            if (length < 0 || length > data.length - position) {
+                throw new IOException("Corrupt archive length " + length);
+            }
+            return (int) length;
+        }
+
+        String readString() throws IOException {
+            int length = readLength();
+            String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
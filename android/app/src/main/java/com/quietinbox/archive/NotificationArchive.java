@@ -0,0 +1,232 @@
+package com.quietinbox.archive;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.quietinbox.database.AppDatabase;
+import com.quietinbox.database.NotificationEntity;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Cold archive tier for notification history
+ * Old rows are moved out of the live notifications table into immutable,
+ * compressed segment files under files/archive. Live-table queries never read it;
+ * NotificationSearch scans it once a query runs out of live matches.
+ */
+public class NotificationArchive {
+    private static final String TAG = "NotificationArchive";
+    private static final String ARCHIVE_DIR = "archive";
+
+    // Rows read from the live table per query, and rows per segment file
+    private static final int READ_BATCH = 1000;
+    private static final int MAX_SEGMENT_ROWS = 64 * 1024;
+
+    private final File directory;
+
+    public NotificationArchive(Context context) {
+        this(new File(context.getFilesDir(), ARCHIVE_DIR));
+    }
+
+    NotificationArchive(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Streaming consumer of archived rows; return false to stop the scan
+     */
+    public interface Visitor {
+        boolean visit(ArchivedNotification row);
+    }
+
+    /**
+     * Highest row ID and cutoff covered by a run's last segment
+     * Live rows with id <= maxRowId and received_at < cutoff are safe to delete
+     */
+    public static class Watermark {
+        public final long maxRowId;
+        public final long cutoff;
+
+        Watermark(long maxRowId, long cutoff) {
+            this.maxRowId = maxRowId;
+            this.cutoff = cutoff;
+        }
+    }
+
+    /**
+     * Signals that the caller wants the current append to stop
+     */
+    public interface StopSignal {
+        boolean isStopped();
+    }
+
+    /**
+     * Copy live rows older than cutoff into new segments, scanning from the lowest ID
+     * Rows are not deleted here: callers first delete up to getWatermark(), so no
+     * archived row is left live, then append and delete up to the returned watermark.
+     * Each run starts from the lowest ID, so rows an earlier run skipped (newer
+     * than its cutoff, or not yet synced) are picked up once they qualify.
+     * Stops between read batches once stop is signalled; rows already read are
+     * still committed. Returns null if nothing was archived.
+     */
+    public Watermark append(AppDatabase database, long cutoff, StopSignal stop) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Could not create archive directory");
+        }
+        deleteTempFiles();
+
+        long archived = 0;
+        long afterId = 0;
+        Watermark written = null;
+        while (!stop.isStopped()) {
+            ArchiveSegmentWriter writer = new ArchiveSegmentWriter(directory);
+            try {
+                long lastId = afterId;
+                while (writer.getRowCount() < MAX_SEGMENT_ROWS && !stop.isStopped()) {
+                    List<NotificationEntity> rows =
+                        database.notificationDao().getRowsForArchive(cutoff, lastId, READ_BATCH);
+                    if (rows.isEmpty()) {
+                        break;
+                    }
+                    for (NotificationEntity row : rows) {
+                        writer.append(new ArchivedNotification(
+                            row.appPackage, row.receivedAt, row.action, row.title, row.text));
+                        lastId = row.id;
+                    }
+                }
+
+                if (writer.getRowCount() == 0) {
+                    break;
+                }
+                File segment = writer.commit(lastId, cutoff);
+                archived += writer.getRowCount();
+                afterId = lastId;
+                written = new Watermark(lastId, cutoff);
+                Log.d(TAG, "Wrote " + segment.getName() + " (" + segment.length() + " bytes)");
+            } finally {
+                writer.close();
+            }
+        }
+
+        if (archived > 0) {
+            Log.i(TAG, "Archived " + archived + " notifications");
+        }
+        return written;
+    }
+
+    /**
+     * Watermark of the last segment written, or null if the archive is empty
+     * Runs advance the cutoff and, within a run, segments advance the row ID; a
+     * later run restarts from low IDs, so row ID alone does not order runs.
+     */
+    public Watermark getWatermark() throws IOException {
+        Watermark newest = null;
+        for (SegmentInfo segment : listSegments()) {
+            try (ArchiveSegmentReader reader = new ArchiveSegmentReader(segment.file)) {
+                Watermark watermark = new Watermark(reader.getMaxRowId(), reader.getCutoff());
+                if (newest == null || watermark.cutoff > newest.cutoff
+                        || (watermark.cutoff == newest.cutoff && watermark.maxRowId > newest.maxRowId)) {
+                    newest = watermark;
+                }
+            }
+        }
+        return newest;
+    }
+
+    /**
+     * Stream archived rows with fromTime <= receivedAt < toTime, oldest segment first
+     * Segments outside the range are skipped by name without being opened.
+     */
+    public void scan(long fromTime, long toTime, Visitor visitor) throws IOException {
+        for (SegmentInfo segment : listSegments()) {
+            if (segment.maxTime < fromTime || segment.minTime >= toTime) {
+                continue;
+            }
+            try (ArchiveSegmentReader reader = new ArchiveSegmentReader(segment.file)) {
+                if (!reader.scan(fromTime, toTime, visitor)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Delete whole segments whose newest row is older than the given time
+     */
+    public int prune(long olderThan) {
+        int deleted = 0;
+        for (SegmentInfo segment : listSegments()) {
+            if (segment.maxTime < olderThan && segment.file.delete()) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    private void deleteTempFiles() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.getName().endsWith(".tmp")) {
+                file.delete();
+            }
+        }
+    }
+
+    private List<SegmentInfo> listSegments() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return Collections.emptyList();
+        }
+
+        List<SegmentInfo> segments = new ArrayList<>();
+        for (File file : files) {
+            SegmentInfo info = SegmentInfo.parse(file);
+            if (info != null) {
+                segments.add(info);
+            }
+        }
+        Collections.sort(segments, (a, b) -> Long.compare(a.minTime, b.minTime));
+        return segments;
+    }
+
+    private static final class SegmentInfo {
+        final File file;
+        final long minTime;
+        final long maxTime;
+        final long maxRowId;
+
+        SegmentInfo(File file, long minTime, long maxTime, long maxRowId) {
+            this.file = file;
+            this.minTime = minTime;
+            this.maxTime = maxTime;
+            this.maxRowId = maxRowId;
+        }
+
+        static SegmentInfo parse(File file) {
+            String name = file.getName();
+            if (!name.startsWith(ArchiveSegmentWriter.SEGMENT_PREFIX)
+                    || !name.endsWith(ArchiveSegmentWriter.SEGMENT_SUFFIX)) {
+                return null;
+            }
+            String[] parts = name.substring(
+                ArchiveSegmentWriter.SEGMENT_PREFIX.length(),
+                name.length() - ArchiveSegmentWriter.SEGMENT_SUFFIX.length()).split("-");
+            if (parts.length != 3) {
+                return null;
+            }
+            try {
+                return new SegmentInfo(file,
+                    Long.parseLong(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
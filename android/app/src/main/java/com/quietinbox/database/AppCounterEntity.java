@@ -0,0 +1,22 @@
+package com.quietinbox.database;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+
+/**
+ * Unread notification count per app and lane, maintained by SQLite triggers
+ */
+@Entity(tableName = "app_counters", primaryKeys = {"app_package", "action"})
+public class AppCounterEntity {
+    @NonNull
+    @ColumnInfo(name = "app_package")
+    public String appPackage = "";
+
+    @NonNull
+    @ColumnInfo(name = "action")
+    public String action = ""; // NOW, LATER, NEVER
+
+    @ColumnInfo(name = "unread_count")
+    public int unreadCount;
+}
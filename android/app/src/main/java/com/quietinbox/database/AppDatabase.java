@@ -1,10 +1,14 @@
 package com.quietinbox.database;
 
 import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
 
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import java.io.File;
 
 /**
  * Room Database for QuietInbox
@@ -12,12 +16,16 @@ import androidx.room.RoomDatabase;
 @Database(
     entities = {
         NotificationEntity.class,
+        NotificationFtsEntity.class,
+        NotificationStatsEntity.class,
+        LaneCounterEntity.class,
+        AppCounterEntity.class,
         ProfileEntity.class,
         VIPEntity.class,
         SyncQueueEntity.class,
         UserEntity.class
     },
-    version = 1,
+    version = 9,
     exportSchema = false
 )
 public abstract class AppDatabase extends RoomDatabase {
@@ -26,6 +34,9 @@ public abstract class AppDatabase extends RoomDatabase {
     private static volatile AppDatabase instance;
 
     public abstract NotificationDao notificationDao();
+    public abstract NotificationSearchDao notificationSearchDao();
+    public abstract NotificationStatsDao notificationStatsDao();
+    public abstract CounterDao counterDao();
     public abstract ProfileDao profileDao();
     public abstract VIPDao vipDao();
     public abstract SyncQueueDao syncQueueDao();
@@ -33,14 +44,49 @@ public abstract class AppDatabase extends RoomDatabase {
 
     public static synchronized AppDatabase getInstance(Context context) {
         if (instance == null) {
+            File file = context.getDatabasePath(DATABASE_NAME);
+            if (!file.exists()) {
+                createIncrementalVacuumFile(file);
+            }
             instance = Room.databaseBuilder(
                 context.getApplicationContext(),
                 AppDatabase.class,
                 DATABASE_NAME
             )
-            .fallbackToDestructiveMigration()
+            // Upgrades keep history, the outbox and the signed-in user; only a downgrade starts over
+            .addMigrations(Migrations.ALL)
+            .fallbackToDestructiveMigrationOnDowngrade()
+            // The notification listener writes from its own process
+            .enableMultiInstanceInvalidation()
+            .addCallback(new Callback() {
+                @Override
+                public void onOpen(SupportSQLiteDatabase db) {
+                    CounterTriggers.create(db);
+                }
+            })
             .build();
         }
         return instance;
     }
+
+    /**
+     * auto_vacuum can only change before the first table exists (or with a full VACUUM),
+     * so new files get incremental mode before Room builds the schema
+     * A throwaway table makes SQLite write the header; Room then sees an empty
+     * version 0 database and creates everything as usual.
+     */
+    private static void createIncrementalVacuumFile(File file) {
+        File directory = file.getParentFile();
+        if (directory != null) {
+            directory.mkdirs();
+        }
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(file, null);
+        try {
+            db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+            db.execSQL("CREATE TABLE IF NOT EXISTS vacuum_init (id INTEGER)");
+            db.execSQL("DROP TABLE vacuum_init");
+        } finally {
+            db.close();
+        }
+    }
 }
@@ -0,0 +1,23 @@
+package com.quietinbox.database;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface CounterDao {
+
+    @Query("SELECT IFNULL(SUM(unread_count), 0) FROM lane_counters WHERE action = :action")
+    LiveData<Integer> getLaneCount(String action);
+
+    @Query("SELECT IFNULL(SUM(unread_count), 0) FROM lane_counters WHERE profile_id = :profileId AND action = :action")
+    LiveData<Integer> getLaneCount(long profileId, String action);
+
+    @Query("SELECT * FROM app_counters WHERE action = :action AND unread_count > 0 ORDER BY unread_count DESC")
+    LiveData<List<AppCounterEntity>> getAppCounts(String action);
+
+    @Query("SELECT IFNULL(SUM(unread_count), 0) FROM app_counters WHERE app_package = :appPackage")
+    int getAppUnreadCount(String appPackage);
+}
@@ -0,0 +1,52 @@
+package com.quietinbox.database;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/**
+ * SQLite triggers that keep lane_counters and app_counters in step with
+ * unread (non-dismissed) rows in the notifications table
+ */
+final class CounterTriggers {
+
+    private static final String TRACKED_COLUMNS = "profile_id, app_package, action, dismissed";
+
+    private CounterTriggers() {}
+
+    static void create(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS counters_after_insert " +
+            "AFTER INSERT ON notifications WHEN NEW.dismissed = 0 BEGIN " +
+            adjust("NEW", 1) +
+            "END");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS counters_after_delete " +
+            "AFTER DELETE ON notifications WHEN OLD.dismissed = 0 BEGIN " +
+            adjust("OLD", -1) +
+            "END");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS counters_after_update_old " +
+            "AFTER UPDATE OF " + TRACKED_COLUMNS + " ON notifications WHEN OLD.dismissed = 0 BEGIN " +
+            adjust("OLD", -1) +
+            "END");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS counters_after_update_new " +
+            "AFTER UPDATE OF " + TRACKED_COLUMNS + " ON notifications WHEN NEW.dismissed = 0 BEGIN " +
+            adjust("NEW", 1) +
+            "END");
+    }
+
+    private static String adjust(String row, int delta) {
+        String profileId = row + ".profile_id";
+        String action = "IFNULL(" + row + ".action, '')";
+        String appPackage = "IFNULL(" + row + ".app_package, '')";
+        String newCount = "MAX(unread_count + (" + delta + "), 0)";
+
+        return "INSERT OR IGNORE INTO lane_counters (profile_id, action, unread_count) " +
+                "VALUES (" + profileId + ", " + action + ", 0); " +
+            "UPDATE lane_counters SET unread_count = " + newCount + " " +
+                "WHERE profile_id = " + profileId + " AND action = " + action + "; " +
+            "INSERT OR IGNORE INTO app_counters (app_package, action, unread_count) " +
+                "VALUES (" + appPackage + ", " + action + ", 0); " +
+            "UPDATE app_counters SET unread_count = " + newCount + " " +
+                "WHERE app_package = " + appPackage + " AND action = " + action + "; ";
+    }
+}
@@ -0,0 +1,21 @@
+package com.quietinbox.database;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+
+/**
+ * Unread notification count per profile and lane, maintained by SQLite triggers
+ */
+@Entity(tableName = "lane_counters", primaryKeys = {"profile_id", "action"})
+public class LaneCounterEntity {
+    @ColumnInfo(name = "profile_id")
+    public long profileId;
+
+    @NonNull
+    @ColumnInfo(name = "action")
+    public String action = ""; // NOW, LATER, NEVER
+
+    @ColumnInfo(name = "unread_count")
+    public int unreadCount;
+}
@@ -0,0 +1,138 @@
+package com.quietinbox.database;
+
+import androidx.annotation.NonNull;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/**
+ * Schema steps from version 1 onwards; all additive, so history, the outbox
+ * and the signed-in user survive an upgrade
+ * Statements match what Room generates for the entities, since Room validates
+ * the migrated schema against them.
+ */
+final class Migrations {
+
+    private Migrations() {}
+
+    /**
+     * External-content FTS4 index over title and text, its sync triggers and a rebuild
+     * so existing history is searchable
+     */
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `notifications_fts` USING FTS4("
+                + "`title` TEXT, `text` TEXT, tokenize=unicode61, content=`notifications`)");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_notifications_fts_BEFORE_UPDATE "
+                + "BEFORE UPDATE ON `notifications` BEGIN "
+                + "DELETE FROM `notifications_fts` WHERE `docid`=OLD.`rowid`; END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_notifications_fts_BEFORE_DELETE "
+                + "BEFORE DELETE ON `notifications` BEGIN "
+                + "DELETE FROM `notifications_fts` WHERE `docid`=OLD.`rowid`; END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_notifications_fts_AFTER_UPDATE "
+                + "AFTER UPDATE ON `notifications` BEGIN "
+                + "INSERT INTO `notifications_fts`(`docid`, `title`, `text`) "
+                + "VALUES (NEW.`rowid`, NEW.`title`, NEW.`text`); END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_notifications_fts_AFTER_INSERT "
+                + "AFTER INSERT ON `notifications` BEGIN "
+                + "INSERT INTO `notifications_fts`(`docid`, `title`, `text`) "
+                + "VALUES (NEW.`rowid`, NEW.`title`, NEW.`text`); END");
+            db.execSQL("INSERT INTO notifications_fts(notifications_fts) VALUES('rebuild')");
+        }
+    };
+
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `notification_stats` (`day` INTEGER NOT NULL, "
+                + "`app_package` TEXT NOT NULL, `action` TEXT NOT NULL, `count` INTEGER NOT NULL, "
+                + "`vip_count` INTEGER NOT NULL, PRIMARY KEY(`day`, `app_package`, `action`))");
+        }
+    };
+
+    /**
+     * Counter tables, seeded from current unread rows; CounterTriggers keeps them
+     * in step from the next open
+     */
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `notifications` ADD COLUMN `profile_id` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `lane_counters` (`profile_id` INTEGER NOT NULL, "
+                + "`action` TEXT NOT NULL, `unread_count` INTEGER NOT NULL, PRIMARY KEY(`profile_id`, `action`))");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `app_counters` (`app_package` TEXT NOT NULL, "
+                + "`action` TEXT NOT NULL, `unread_count` INTEGER NOT NULL, PRIMARY KEY(`app_package`, `action`))");
+            db.execSQL("INSERT INTO lane_counters (profile_id, action, unread_count) "
+                + "SELECT profile_id, IFNULL(action, ''), COUNT(*) FROM notifications "
+                + "WHERE dismissed = 0 GROUP BY profile_id, IFNULL(action, '')");
+            db.execSQL("INSERT INTO app_counters (app_package, action, unread_count) "
+                + "SELECT IFNULL(app_package, ''), IFNULL(action, ''), COUNT(*) FROM notifications "
+                + "WHERE dismissed = 0 GROUP BY IFNULL(app_package, ''), IFNULL(action, '')");
+        }
+    };
+
+    /**
+     * Repeat folding; existing rows keep a zero content hash, so only new
+     * notifications fold into each other
+     */
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `notifications` ADD COLUMN `content_hash` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE `notifications` ADD COLUMN `repeat_count` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE `notifications` ADD COLUMN `last_seen` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("UPDATE notifications SET last_seen = received_at");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_notifications_app_package_content_hash` "
+                + "ON `notifications` (`app_package`, `content_hash`)");
+        }
+    };
+
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `profiles` ADD COLUMN `updated_at` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("UPDATE profiles SET updated_at = created_at");
+            db.execSQL("ALTER TABLE `vips` ADD COLUMN `updated_at` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("UPDATE vips SET updated_at = created_at");
+            db.execSQL("ALTER TABLE `user` ADD COLUMN `pull_cursor` TEXT");
+        }
+    };
+
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `sync_queue` ADD COLUMN `next_attempt_at` INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_notifications_action_app_package_title` "
+                + "ON `notifications` (`action`, `app_package`, `title`)");
+        }
+    };
+
+    /**
+     * Per-install scope for push idempotency keys; local row IDs restart with a new
+     * database while ANDROID_ID does not
+     */
+    static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `user` ADD COLUMN `install_id` TEXT");
+            db.execSQL("UPDATE user SET install_id = lower(hex(randomblob(16)))");
+        }
+    };
+
+    static final Migration[] ALL = {
+        MIGRATION_1_2,
+        MIGRATION_2_3,
+        MIGRATION_3_4,
+        MIGRATION_4_5,
+        MIGRATION_5_6,
+        MIGRATION_6_7,
+        MIGRATION_7_8,
+        MIGRATION_8_9
+    };
+}
@@ -15,6 +15,9 @@ public interface NotificationDao {
     @Insert
     long insert(NotificationEntity notification);
 
+    @Insert
+    void insertAll(List<NotificationEntity> notifications);
+
     @Update
     void update(NotificationEntity notification);
 
@@ -24,14 +27,52 @@ public interface NotificationDao {
     @Query("SELECT * FROM notifications WHERE action = :action AND dismissed = 0 ORDER BY received_at DESC")
     LiveData<List<NotificationEntity>> getNotificationsByAction(String action);
 
+    // Digest sections; bare title/text columns come from the row holding MAX(received_at).
+    // Untitled notifications form their own sender group, keyed by the empty string
+    @Query("SELECT app_package, MAX(app_name) AS app_name, 0 AS by_sender, NULL AS sender, COUNT(*) AS count, " +
+           "MAX(received_at) AS latest_at, title AS top_title, text AS top_text " +
+           "FROM notifications WHERE action = :action AND dismissed = 0 " +
+           "GROUP BY app_package ORDER BY latest_at DESC")
+    LiveData<List<NotificationGroup>> getAppGroups(String action);
+
+    @Query("SELECT app_package, MAX(app_name) AS app_name, 1 AS by_sender, COALESCE(title, '') AS sender, " +
+           "COUNT(*) AS count, MAX(received_at) AS latest_at, title AS top_title, text AS top_text " +
+           "FROM notifications WHERE action = :action AND dismissed = 0 " +
+           "GROUP BY app_package, COALESCE(title, '') ORDER BY latest_at DESC")
+    LiveData<List<NotificationGroup>> getSenderGroups(String action);
+
+    @Query("SELECT * FROM notifications WHERE action = :action AND dismissed = 0 " +
+           "AND app_package = :appPackage ORDER BY received_at DESC")
+    LiveData<List<NotificationEntity>> getGroupNotifications(String action, String appPackage);
+
+    @Query("SELECT * FROM notifications WHERE action = :action AND dismissed = 0 " +
+           "AND app_package = :appPackage AND COALESCE(title, '') = :sender ORDER BY received_at DESC")
+    LiveData<List<NotificationEntity>> getGroupNotifications(String action, String appPackage, String sender);
+
     @Query("SELECT * FROM notifications WHERE dismissed = 0 ORDER BY received_at DESC LIMIT :limit")
     LiveData<List<NotificationEntity>> getRecentNotifications(int limit);
 
-    @Query("SELECT * FROM notifications WHERE synced = 0")
-    List<NotificationEntity> getUnsyncedNotifications();
+    @Query("SELECT * FROM notifications WHERE app_package = :appPackage AND content_hash = :contentHash " +
+           "AND dismissed = 0 AND received_at >= :since ORDER BY id DESC LIMIT 1")
+    NotificationEntity findRecentDuplicate(String appPackage, long contentHash, long since);
+
+    // Unsynced again so the next push carries the new repeat count
+    @Query("UPDATE notifications SET repeat_count = repeat_count + 1, last_seen = :seenAt, synced = 0 WHERE id = :id")
+    void bumpRepeat(long id, long seenAt);
 
-    @Query("UPDATE notifications SET synced = 1 WHERE id = :id")
-    void markAsSynced(long id);
+    @Query("SELECT * FROM notifications WHERE synced = 0 AND id > :afterId ORDER BY id LIMIT :limit")
+    List<NotificationEntity> getUnsyncedAfter(long afterId, int limit);
+
+    @Query("SELECT COUNT(*) FROM notifications WHERE synced = 0")
+    int getUnsyncedCount();
+
+    // Skips a row whose repeat count moved since it was read, so that repeat is pushed next time
+    @Query("UPDATE notifications SET synced = 1 WHERE id = :id AND repeat_count = :repeatCount")
+    int markSyncedIfUnchanged(long id, int repeatCount);
+
+    @Query("SELECT * FROM notifications WHERE app_package IS :appPackage " +
+           "AND received_at >= :from AND received_at < :to")
+    List<NotificationEntity> getForApp(String appPackage, long from, long to);
 
     @Query("UPDATE notifications SET dismissed = 1 WHERE id = :id")
     void markAsDismissed(long id);
@@ -39,6 +80,20 @@ public interface NotificationDao {
     @Query("DELETE FROM notifications WHERE received_at < :timestamp")
     void deleteOlderThan(long timestamp);
 
-    @Query("SELECT COUNT(*) FROM notifications WHERE action = :action AND dismissed = 0")
-    LiveData<Integer> getCountByAction(String action);
+    // Unsynced rows wait for their push unless nothing will ever push them
+    @Query("SELECT id FROM notifications WHERE received_at < :timestamp AND id <= :maxId " +
+           "AND (synced = 1 OR :includeUnsynced) ORDER BY id LIMIT :limit")
+    List<Long> getIdsOlderThan(long timestamp, long maxId, boolean includeUnsynced, int limit);
+
+    @Query("SELECT * FROM notifications WHERE received_at < :timestamp AND id > :afterId AND synced = 1 " +
+           "ORDER BY id LIMIT :limit")
+    List<NotificationEntity> getRowsForArchive(long timestamp, long afterId, int limit);
+
+    @Query("SELECT received_at / 86400000 AS day, COALESCE(app_package, '') AS app_package, " +
+           "COALESCE(action, '') AS action, COUNT(*) AS count, SUM(is_vip) AS vip_count " +
+           "FROM notifications WHERE id IN (:ids) GROUP BY day, app_package, action")
+    List<NotificationStatsEntity> aggregateByIds(List<Long> ids);
+
+    @Query("DELETE FROM notifications WHERE id IN (:ids)")
+    int deleteByIds(List<Long> ids);
 }
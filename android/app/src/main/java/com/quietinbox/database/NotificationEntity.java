@@ -1,13 +1,20 @@
 package com.quietinbox.database;
 
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 import androidx.room.ColumnInfo;
 
 /**
  * Entity representing a notification event
  */
-@Entity(tableName = "notifications")
+@Entity(
+    tableName = "notifications",
+    indices = {
+        @Index(value = {"app_package", "content_hash"}),
+        @Index(value = {"action", "app_package", "title"})
+    }
+)
 public class NotificationEntity {
     @PrimaryKey(autoGenerate = true)
     public long id;
@@ -30,6 +37,9 @@ public class NotificationEntity {
     @ColumnInfo(name = "received_at")
     public long receivedAt;
 
+    @ColumnInfo(name = "profile_id")
+    public long profileId; // profile active when the notification was classified
+
     @ColumnInfo(name = "action")
     public String action; // NOW, LATER, NEVER
 
@@ -45,8 +55,18 @@ public class NotificationEntity {
     @ColumnInfo(name = "dismissed")
     public boolean dismissed;
 
+    @ColumnInfo(name = "content_hash")
+    public long contentHash; // hash of package, title and text
+
+    @ColumnInfo(name = "repeat_count")
+    public int repeatCount; // identical notifications folded into this row
+
+    @ColumnInfo(name = "last_seen")
+    public long lastSeen;
+
     public NotificationEntity() {
         this.receivedAt = System.currentTimeMillis();
+        this.lastSeen = this.receivedAt;
         this.synced = false;
         this.dismissed = false;
     }
@@ -0,0 +1,20 @@
+package com.quietinbox.database;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.FtsOptions;
+
+/**
+ * External-content FTS4 index over notification title and text
+ * Room keeps it in sync with the notifications table through triggers
+ */
+@Fts4(contentEntity = NotificationEntity.class, tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = "notifications_fts")
+public class NotificationFtsEntity {
+    @ColumnInfo(name = "title")
+    public String title;
+
+    @ColumnInfo(name = "text")
+    public String text;
+}
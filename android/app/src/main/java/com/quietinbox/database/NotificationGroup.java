@@ -0,0 +1,42 @@
+package com.quietinbox.database;
+
+import androidx.room.ColumnInfo;
+
+/**
+ * One section of the grouped digest: an app, or a sender within an app,
+ * with its notification count, latest time and latest notification
+ * Messaging apps post the sender or conversation as the notification title,
+ * so sender groups are keyed on title.
+ */
+public class NotificationGroup {
+    @ColumnInfo(name = "app_package")
+    public String appPackage;
+
+    @ColumnInfo(name = "app_name")
+    public String appName;
+
+    @ColumnInfo(name = "by_sender")
+    public boolean bySender;
+
+    @ColumnInfo(name = "sender")
+    public String sender; // null when grouped by app, empty for untitled notifications
+
+    @ColumnInfo(name = "count")
+    public int count;
+
+    @ColumnInfo(name = "latest_at")
+    public long latestAt;
+
+    @ColumnInfo(name = "top_title")
+    public String topTitle;
+
+    @ColumnInfo(name = "top_text")
+    public String topText;
+
+    /**
+     * Stable identity of the section across reloads
+     */
+    public String getKey() {
+        return bySender ? appPackage + '\u0000' + sender : appPackage;
+    }
+}
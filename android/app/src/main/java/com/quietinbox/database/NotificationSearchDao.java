@@ -0,0 +1,29 @@
+package com.quietinbox.database;
+
+import androidx.room.Dao;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface NotificationSearchDao {
+
+    String SNIPPET_START = "\u0002";
+    String SNIPPET_END = "\u0003";
+
+    /**
+     * Most recent matches for an FTS4 MATCH expression, capped at :limit candidates.
+     * The snippet comes from the text column and the title is marked up whole (up to
+     * snippet's 64-token limit); matches are wrapped in SNIPPET_START/SNIPPET_END.
+     */
+    @Query("SELECT notifications.*, " +
+           "snippet(notifications_fts, '" + SNIPPET_START + "', '" + SNIPPET_END + "', '…', 1, 12) AS snippet, " +
+           "snippet(notifications_fts, '" + SNIPPET_START + "', '" + SNIPPET_END + "', '…', 0, 64) AS title_snippet, " +
+           "matchinfo(notifications_fts, 'pcx') AS match_info " +
+           "FROM notifications " +
+           "JOIN notifications_fts ON notifications.id = notifications_fts.rowid " +
+           "WHERE notifications_fts MATCH :matchQuery " +
+           "ORDER BY notifications.received_at DESC " +
+           "LIMIT :limit")
+    List<NotificationSearchResult> search(String matchQuery, int limit);
+}
@@ -0,0 +1,24 @@
+package com.quietinbox.database;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Embedded;
+
+/**
+ * A notification matched by full-text search, with its highlighted text snippet
+ * and title, and the raw FTS matchinfo blob used for ranking
+ */
+public class NotificationSearchResult {
+    @Embedded
+    public NotificationEntity notification;
+
+    @ColumnInfo(name = "snippet")
+    public String snippet;
+
+    @ColumnInfo(name = "title_snippet")
+    public String titleSnippet;
+
+    @ColumnInfo(name = "match_info")
+    public byte[] matchInfo;
+
+    public transient double score;
+}
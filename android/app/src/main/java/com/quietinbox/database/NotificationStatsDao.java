@@ -0,0 +1,22 @@
+package com.quietinbox.database;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface NotificationStatsDao {
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    long insertIfAbsent(NotificationStatsEntity stats);
+
+    @Query("UPDATE notification_stats SET count = count + :count, vip_count = vip_count + :vipCount " +
+           "WHERE day = :day AND app_package = :appPackage AND action = :action")
+    void addCounts(long day, String appPackage, String action, int count, int vipCount);
+
+    @Query("SELECT * FROM notification_stats WHERE day >= :fromDay ORDER BY day DESC, count DESC")
+    List<NotificationStatsEntity> getStatsSince(long fromDay);
+}
@@ -0,0 +1,28 @@
+package com.quietinbox.database;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+
+/**
+ * Daily per-app aggregate of notifications rolled up before retention cleanup
+ */
+@Entity(tableName = "notification_stats", primaryKeys = {"day", "app_package", "action"})
+public class NotificationStatsEntity {
+    @ColumnInfo(name = "day")
+    public long day; // days since epoch (UTC)
+
+    @NonNull
+    @ColumnInfo(name = "app_package")
+    public String appPackage = "";
+
+    @NonNull
+    @ColumnInfo(name = "action")
+    public String action = ""; // NOW, LATER, NEVER
+
+    @ColumnInfo(name = "count")
+    public int count;
+
+    @ColumnInfo(name = "vip_count")
+    public int vipCount;
+}
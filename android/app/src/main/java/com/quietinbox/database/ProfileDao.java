@@ -33,6 +33,15 @@ public interface ProfileDao {
     @Query("SELECT * FROM profiles WHERE id = :id")
     ProfileEntity getProfileById(long id);
 
+    @Query("SELECT * FROM profiles WHERE server_id = :serverId LIMIT 1")
+    ProfileEntity getProfileByServerId(long serverId);
+
+    @Query("SELECT * FROM profiles WHERE server_id IS NULL AND name = :name ORDER BY id LIMIT 1")
+    ProfileEntity getUnlinkedProfileByName(String name);
+
+    @Query("DELETE FROM profiles WHERE server_id = :serverId")
+    void deleteByServerId(long serverId);
+
     @Query("UPDATE profiles SET is_active = 0")
     void deactivateAllProfiles();
 
@@ -45,6 +54,10 @@ public interface ProfileDao {
     @Query("UPDATE profiles SET synced = 1 WHERE id = :id")
     void markAsSynced(long id);
 
+    // Only the columns a push response decides; edits made while it was in flight stay
+    @Query("UPDATE profiles SET server_id = :serverId, synced = :synced WHERE id = :id")
+    void updateServerId(long id, long serverId, boolean synced);
+
     @Query("SELECT COUNT(*) FROM profiles")
     int getProfileCount();
 }
@@ -33,11 +33,15 @@ public class ProfileEntity {
     @ColumnInfo(name = "created_at")
     public long createdAt;
 
+    @ColumnInfo(name = "updated_at")
+    public long updatedAt; // last local or pulled change, for last-writer-wins merge
+
     @ColumnInfo(name = "synced")
     public boolean synced;
 
     public ProfileEntity() {
         this.createdAt = System.currentTimeMillis();
+        this.updatedAt = this.createdAt;
         this.synced = false;
         this.rulesJson = "{}";
     }
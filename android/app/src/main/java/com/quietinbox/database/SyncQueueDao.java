@@ -19,6 +19,33 @@ public interface SyncQueueDao {
     @Query("SELECT * FROM sync_queue WHERE status = 'PENDING' ORDER BY created_at ASC")
     List<SyncQueueEntity> getPendingItems();
 
+    @Query("SELECT * FROM sync_queue WHERE status = 'PENDING' AND entity_type = :entityType " +
+           "AND entity_id = :entityId LIMIT 1")
+    SyncQueueEntity findPending(String entityType, long entityId);
+
+    @Query("SELECT * FROM sync_queue WHERE status = 'PENDING' AND next_attempt_at <= :now " +
+           "ORDER BY id LIMIT :limit")
+    List<SyncQueueEntity> getReadyItems(long now, int limit);
+
+    @Query("SELECT COUNT(*) FROM sync_queue WHERE status = 'PENDING'")
+    int getPendingCount();
+
+    @Query("SELECT COUNT(*) FROM sync_queue WHERE status = 'FAILED'")
+    int getFailedCount();
+
+    @Query("UPDATE sync_queue SET status = 'PROCESSING' WHERE id IN (:ids)")
+    void markProcessing(List<Long> ids);
+
+    @Query("UPDATE sync_queue SET status = 'PENDING' WHERE status = 'PROCESSING'")
+    void resetProcessing();
+
+    @Query("UPDATE sync_queue SET status = 'PENDING', retry_count = :retryCount, " +
+           "next_attempt_at = :nextAttemptAt WHERE id = :id")
+    void scheduleRetry(long id, int retryCount, long nextAttemptAt);
+
+    @Query("DELETE FROM sync_queue WHERE id IN (:ids)")
+    void deleteByIds(List<Long> ids);
+
     @Query("UPDATE sync_queue SET status = :status WHERE id = :id")
     void updateStatus(long id, String status);
 
@@ -16,7 +16,7 @@ public class SyncQueueEntity {
     public String operation; // CREATE, UPDATE, DELETE
 
     @ColumnInfo(name = "entity_type")
-    public String entityType; // profile, vip, notification
+    public String entityType; // profile, vip, dismissal
 
     @ColumnInfo(name = "entity_id")
     public long entityId;
@@ -33,9 +33,13 @@ public class SyncQueueEntity {
     @ColumnInfo(name = "retry_count")
     public int retryCount;
 
+    @ColumnInfo(name = "next_attempt_at")
+    public long nextAttemptAt; // earliest time the next retry may run
+
     public SyncQueueEntity() {
         this.createdAt = System.currentTimeMillis();
         this.status = "PENDING";
         this.retryCount = 0;
+        this.nextAttemptAt = 0;
     }
 }
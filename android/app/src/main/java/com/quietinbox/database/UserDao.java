@@ -25,4 +25,7 @@ public interface UserDao {
 
     @Query("UPDATE user SET last_sync = :timestamp WHERE id = 1")
     void updateLastSync(long timestamp);
+
+    @Query("UPDATE user SET pull_cursor = :cursor WHERE id = 1")
+    void updatePullCursor(String cursor);
 }
@@ -4,6 +4,8 @@ import androidx.room.Entity;
 import androidx.room.PrimaryKey;
 import androidx.room.ColumnInfo;
 
+import java.util.UUID;
+
 /**
  * Entity representing the local user
  */
@@ -33,8 +35,15 @@ public class UserEntity {
     @ColumnInfo(name = "last_sync")
     public Long lastSync;
 
+    @ColumnInfo(name = "pull_cursor")
+    public String pullCursor; // opaque server cursor for incremental pull sync
+
+    @ColumnInfo(name = "install_id")
+    public String installId; // random per local database; scopes push idempotency keys
+
     public UserEntity() {
         this.createdAt = System.currentTimeMillis();
         this.isPro = false;
+        this.installId = UUID.randomUUID().toString();
     }
 }
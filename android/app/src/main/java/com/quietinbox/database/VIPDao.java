@@ -24,9 +24,18 @@ public interface VIPDao {
     @Query("SELECT * FROM vips ORDER BY priority DESC, created_at DESC")
     LiveData<List<VIPEntity>> getAllVIPs();
 
+    @Query("SELECT * FROM vips")
+    List<VIPEntity> getAllVIPsList();
+
     @Query("SELECT * FROM vips WHERE id = :id")
     VIPEntity getVIPById(long id);
 
+    @Query("SELECT * FROM vips WHERE server_id = :serverId LIMIT 1")
+    VIPEntity getVIPByServerId(long serverId);
+
+    @Query("DELETE FROM vips WHERE server_id = :serverId")
+    void deleteByServerId(long serverId);
+
     @Query("SELECT * FROM vips WHERE app_package = :appPackage AND identifier = :identifier LIMIT 1")
     VIPEntity findVIP(String appPackage, String identifier);
 
@@ -36,6 +45,10 @@ public interface VIPDao {
     @Query("UPDATE vips SET synced = 1 WHERE id = :id")
     void markAsSynced(long id);
 
+    // Only the columns a push response decides; edits made while it was in flight stay
+    @Query("UPDATE vips SET server_id = :serverId, synced = :synced WHERE id = :id")
+    void updateServerId(long id, long serverId, boolean synced);
+
     @Query("SELECT COUNT(*) FROM vips")
     int getVIPCount();
 }
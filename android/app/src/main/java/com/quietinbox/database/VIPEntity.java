@@ -33,11 +33,15 @@ public class VIPEntity {
     @ColumnInfo(name = "created_at")
     public long createdAt;
 
+    @ColumnInfo(name = "updated_at")
+    public long updatedAt; // last local or pulled change, for last-writer-wins merge
+
     @ColumnInfo(name = "synced")
     public boolean synced;
 
     public VIPEntity() {
         this.createdAt = System.currentTimeMillis();
+        this.updatedAt = this.createdAt;
         this.synced = false;
         this.priority = 1;
         this.bypassQuietHours = true;
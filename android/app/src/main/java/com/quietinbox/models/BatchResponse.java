@@ -0,0 +1,19 @@
+package com.quietinbox.models;
+
+import java.util.List;
+
+public class BatchResponse {
+    public boolean success;
+    public List<Result> results;
+
+    public BatchResponse() {}
+
+    public static class Result {
+        public String client_id;
+        public Long id;
+        public String status; // ok, rejected
+        public String detail;
+
+        public Result() {}
+    }
+}
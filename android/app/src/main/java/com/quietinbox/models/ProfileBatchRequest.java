@@ -0,0 +1,20 @@
+package com.quietinbox.models;
+
+import java.util.List;
+
+public class ProfileBatchRequest {
+    public List<Item> items;
+
+    public ProfileBatchRequest(List<Item> items) {
+        this.items = items;
+    }
+
+    /**
+     * Profile upsert keyed by the local row ID; id is the server ID, 0 to create
+     */
+    public static class Item extends Profile {
+        public String client_id;
+
+        public Item() {}
+    }
+}
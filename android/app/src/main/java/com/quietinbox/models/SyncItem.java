@@ -0,0 +1,80 @@
+package com.quietinbox.models;
+
+import java.util.Map;
+
+/**
+ * One entry of a sync push, serialized as {"local_id", "type", "data"}
+ * Subclasses hold the data fields; SyncItemAdapter writes them without reflection
+ */
+public abstract class SyncItem {
+    public String local_id;
+    public String type;
+
+    protected SyncItem(String localId, String type) {
+        this.local_id = localId;
+        this.type = type;
+    }
+
+    /**
+     * Full notification content, only sent when content upload is enabled
+     */
+    public static class Notification extends SyncItem {
+        public String app_package;
+        public String title;
+        public String text;
+        public String action;
+        public float confidence;
+        public long received_at;
+        public int repeat_count;
+
+        public Notification(String localId) {
+            super(localId, "notification");
+        }
+    }
+
+    /**
+     * Notification metadata without title or text
+     */
+    public static class NotificationMeta extends SyncItem {
+        public String app_package;
+        public long received_at;
+        public String action;
+        public float confidence;
+        public String sender_hash; // HMAC keyed with a secret that stays on the device
+        public int repeat_count;
+
+        public NotificationMeta(String localId) {
+            super(localId, "notification_meta");
+        }
+    }
+
+    /**
+     * Per-app counts for one hour
+     */
+    public static class NotificationHistogram extends SyncItem {
+        public String app_package;
+        public long hour_start;
+        public long first_local_id;
+        public int count;
+        public int vip_count;
+        public float confidence_sum;
+        public int repeat_count;
+        public Map<String, Integer> actions;
+
+        public NotificationHistogram(String localId) {
+            super(localId, "notification_histogram");
+        }
+    }
+
+    /**
+     * A notification dismissed on this device
+     */
+    public static class Dismissal extends SyncItem {
+        public long notification_local_id;
+        public long dismissed_at;
+
+        public Dismissal(String localId) {
+            super(localId, "dismissal");
+        }
+    }
+}
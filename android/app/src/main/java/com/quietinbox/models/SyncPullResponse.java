@@ -6,6 +6,8 @@ import java.util.Map;
 public class SyncPullResponse {
     public boolean success;
     public List<Map<String, Object>> items;
+    public String next_cursor;
+    public boolean has_more;
     public String server_timestamp;
 
     public SyncPullResponse() {}
@@ -1,14 +1,15 @@
 package com.quietinbox.models;
 
 import java.util.List;
-import java.util.Map;
 
 public class SyncPushRequest {
-    public List<Map<String, Object>> items;
+    public List<? extends SyncItem> items;
+    public String install_id; // local database the item local_ids belong to
     public String device_timestamp;
 
-    public SyncPushRequest(List<Map<String, Object>> items, String deviceTimestamp) {
+    public SyncPushRequest(List<? extends SyncItem> items, String installId, String deviceTimestamp) {
         this.items = items;
+        this.install_id = installId;
         this.device_timestamp = deviceTimestamp;
     }
 }
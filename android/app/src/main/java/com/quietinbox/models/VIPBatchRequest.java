@@ -0,0 +1,22 @@
+package com.quietinbox.models;
+
+import java.util.List;
+
+public class VIPBatchRequest {
+    public List<Item> items;
+    public List<Long> deleted_ids;
+
+    public VIPBatchRequest(List<Item> items, List<Long> deletedIds) {
+        this.items = items;
+        this.deleted_ids = deletedIds;
+    }
+
+    /**
+     * VIP upsert keyed by the local row ID; id is the server ID, 0 to create
+     */
+    public static class Item extends VIP {
+        public String client_id;
+
+        public Item() {}
+    }
+}
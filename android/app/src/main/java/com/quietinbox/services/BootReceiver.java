@@ -6,7 +6,7 @@ import android.content.Intent;
 import android.util.Log;
 
 /**
- * Receiver to start services on device boot
+ * Receiver to restore background work on device boot
  */
 public class BootReceiver extends BroadcastReceiver {
     private static final String TAG = "BootReceiver";
@@ -16,9 +16,8 @@ public class BootReceiver extends BroadcastReceiver {
         if (Intent.ACTION_BOOT_COMPLETED.equals(intent.getAction())) {
             Log.d(TAG, "Boot completed, initializing QuietInbox");
 
-            // Start sync service
-            Intent syncIntent = new Intent(context, SyncService.class);
-            context.startService(syncIntent);
+            // WorkManager restores its own jobs; this only covers a schedule that was never created
+            SyncWorker.schedule(context);
         }
     }
 }
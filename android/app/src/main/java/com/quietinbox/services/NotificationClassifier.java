@@ -4,17 +4,25 @@ import android.content.Context;
 import android.service.notification.StatusBarNotification;
 import android.util.Log;
 
+import androidx.annotation.NonNull;
+import androidx.room.InvalidationTracker;
+
 import com.quietinbox.database.AppDatabase;
 import com.quietinbox.database.ProfileEntity;
 import com.quietinbox.database.VIPEntity;
 
-import java.text.SimpleDateFormat;
 import java.util.Calendar;
-import java.util.Locale;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Classifies notifications into NOW, LATER, or NEVER categories
  * Uses rule-based logic and VIP status
+ * The active profile, its parsed quiet hours and a VIP index are held in memory
+ * and reloaded after Room reports a write to profiles or vips, from any process.
  */
 public class NotificationClassifier {
     private static final String TAG = "NotificationClassifier";
@@ -23,31 +31,69 @@ public class NotificationClassifier {
     public static final String ACTION_LATER = "LATER";
     public static final String ACTION_NEVER = "NEVER";
 
+    private static final String WARM_UP_PACKAGE = "com.quietinbox.warmup";
+
     private final Context context;
     private final AppDatabase database;
+    private final InvalidationTracker.Observer invalidationObserver;
+    private boolean observing;
+
+    // Null until loaded and after profiles or vips change
+    private volatile Snapshot snapshot;
+    private final AtomicInteger generation = new AtomicInteger();
 
     public NotificationClassifier(Context context) {
         this.context = context;
         this.database = AppDatabase.getInstance(context);
+        this.invalidationObserver = new InvalidationTracker.Observer("profiles", "vips") {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                generation.incrementAndGet();
+                snapshot = null;
+            }
+        };
+    }
+
+    /**
+     * Load the rule snapshot and run one throwaway classification, so the first
+     * real notification does not pay for DB open, queries and class loading
+     * Blocks; call off the main thread.
+     */
+    public void warmUp() {
+        getSnapshot();
+        classify(WARM_UP_PACKAGE, "Warm-up", "Warm-up notification");
+    }
+
+    /**
+     * Stop tracking rule changes; call when the owner is destroyed
+     */
+    public synchronized void close() {
+        if (observing) {
+            database.getInvalidationTracker().removeObserver(invalidationObserver);
+            observing = false;
+        }
     }
 
     /**
      * Classify a notification
      */
     public ClassificationResult classify(StatusBarNotification sbn) {
+        return classify(sbn.getPackageName(), getTitle(sbn), getText(sbn));
+    }
+
+    private ClassificationResult classify(String packageName, String title, String text) {
         try {
-            String packageName = sbn.getPackageName();
-            String title = getTitle(sbn);
-            String text = getText(sbn);
+            Snapshot rules = getSnapshot();
 
             // Check VIP status
-            boolean isVip = checkVIPStatus(packageName, title, text);
+            VIPEntity vip = findVIP(rules, packageName, title, text);
+            boolean isVip = vip != null;
 
             // Get active profile
-            ProfileEntity profile = database.profileDao().getActiveProfile();
+            ProfileEntity profile = rules.activeProfile;
 
             // Check quiet hours
-            boolean inQuietHours = profile != null && isInQuietHours(profile);
+            boolean inQuietHours = rules.isInQuietHours();
 
             // Apply classification rules
             String action;
@@ -56,8 +102,7 @@ public class NotificationClassifier {
             if (isVip) {
                 // VIP notifications always go to NOW (unless it's quiet hours and VIP doesn't bypass)
                 if (inQuietHours) {
-                    VIPEntity vip = findVIP(packageName, title, text);
-                    if (vip != null && vip.bypassQuietHours) {
+                    if (vip.bypassQuietHours) {
                         action = ACTION_NOW;
                         confidence = 0.95f;
                     } else {
@@ -82,7 +127,9 @@ public class NotificationClassifier {
                 confidence = 0.70f;
             }
 
-            return new ClassificationResult(action, confidence, isVip);
+            ClassificationResult result = new ClassificationResult(action, confidence, isVip);
+            result.profileId = profile != null ? profile.id : 0;
+            return result;
 
         } catch (Exception e) {
             Log.e(TAG, "Classification error", e);
@@ -91,23 +138,37 @@ public class NotificationClassifier {
         }
     }
 
-    private boolean checkVIPStatus(String packageName, String title, String text) {
-        try {
-            // Check if there's a VIP entry for this app/sender
-            VIPEntity vip = findVIP(packageName, title, text);
-            return vip != null;
-        } catch (Exception e) {
-            Log.e(TAG, "Error checking VIP status", e);
-            return false;
+    private Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            startObserving();
+            int loadedGeneration = generation.get();
+            current = new Snapshot(database.profileDao().getActiveProfile(), database.vipDao().getAllVIPsList());
+            // Keep it only if no write landed while loading
+            if (generation.get() == loadedGeneration) {
+                snapshot = current;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Registered on first load rather than in the constructor, since syncing
+     * Room's tracking triggers touches the database
+     */
+    private synchronized void startObserving() {
+        if (!observing) {
+            database.getInvalidationTracker().addObserver(invalidationObserver);
+            observing = true;
         }
     }
 
-    private VIPEntity findVIP(String packageName, String title, String text) {
+    private VIPEntity findVIP(Snapshot rules, String packageName, String title, String text) {
         // Try to find VIP by package and identifier
         // Identifier could be in title or text
         String identifier = extractIdentifier(title, text);
         if (identifier != null) {
-            return database.vipDao().findVIP(packageName, identifier);
+            return rules.vips.get(Snapshot.vipKey(packageName, identifier));
         }
         return null;
     }
@@ -124,31 +185,6 @@ public class NotificationClassifier {
         return null;
     }
 
-    private boolean isInQuietHours(ProfileEntity profile) {
-        try {
-            if (profile.quietHoursStart == null || profile.quietHoursEnd == null) {
-                return false;
-            }
-
-            SimpleDateFormat sdf = new SimpleDateFormat("HH:mm", Locale.getDefault());
-            Calendar now = Calendar.getInstance();
-            String currentTime = sdf.format(now.getTime());
-
-            String start = profile.quietHoursStart;
-            String end = profile.quietHoursEnd;
-
-            // Handle overnight quiet hours (e.g., 22:00 to 07:00)
-            if (start.compareTo(end) > 0) {
-                return currentTime.compareTo(start) >= 0 || currentTime.compareTo(end) < 0;
-            } else {
-                return currentTime.compareTo(start) >= 0 && currentTime.compareTo(end) < 0;
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error checking quiet hours", e);
-            return false;
-        }
-    }
-
     private boolean isSystemNotification(String packageName) {
         return packageName.equals("android") ||
                packageName.equals("com.android.systemui") ||
@@ -200,6 +236,63 @@ public class NotificationClassifier {
         }
     }
 
+    /**
+     * Active profile and VIPs as of the last load, with quiet hours parsed once
+     */
+    static final class Snapshot {
+        final ProfileEntity activeProfile;
+        final Map<String, VIPEntity> vips;
+        // Minutes since midnight, or -1 when the profile has no quiet hours
+        final int quietStart;
+        final int quietEnd;
+
+        Snapshot(ProfileEntity activeProfile, List<VIPEntity> vipList) {
+            this.activeProfile = activeProfile;
+            this.vips = new HashMap<>(vipList.size() * 2);
+            for (VIPEntity vip : vipList) {
+                vips.put(vipKey(vip.appPackage, vip.identifier), vip);
+            }
+            this.quietStart = activeProfile != null ? parseMinutes(activeProfile.quietHoursStart) : -1;
+            this.quietEnd = activeProfile != null ? parseMinutes(activeProfile.quietHoursEnd) : -1;
+        }
+
+        static String vipKey(String appPackage, String identifier) {
+            return appPackage + '\u0000' + identifier;
+        }
+
+        boolean isInQuietHours() {
+            Calendar now = Calendar.getInstance();
+            return isInQuietHours(now.get(Calendar.HOUR_OF_DAY) * 60 + now.get(Calendar.MINUTE));
+        }
+
+        boolean isInQuietHours(int current) {
+            if (quietStart < 0 || quietEnd < 0) {
+                return false;
+            }
+
+            // Handle overnight quiet hours (e.g., 22:00 to 07:00)
+            if (quietStart > quietEnd) {
+                return current >= quietStart || current < quietEnd;
+            } else {
+                return current >= quietStart && current < quietEnd;
+            }
+        }
+
+        private static int parseMinutes(String time) {
+            try {
+                if (time == null) {
+                    return -1;
+                }
+                int colon = time.indexOf(':');
+                return Integer.parseInt(time.substring(0, colon).trim()) * 60
+                    + Integer.parseInt(time.substring(colon + 1).trim());
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Invalid quiet hours time: " + time);
+                return -1;
+            }
+        }
+    }
+
     /**
      * Classification result
      */
@@ -207,6 +300,7 @@ public class NotificationClassifier {
         public String action;
         public float confidence;
         public boolean isVip;
+        public long profileId;
 
         public ClassificationResult(String action, float confidence, boolean isVip) {
             this.action = action;
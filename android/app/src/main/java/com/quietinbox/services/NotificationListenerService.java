@@ -1,28 +1,41 @@
 package com.quietinbox.services;
 
 import android.app.Notification;
-import android.content.Intent;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.os.Build;
+import android.os.SystemClock;
 import android.service.notification.StatusBarNotification;
 import android.util.Log;
 
 import com.quietinbox.database.AppDatabase;
 import com.quietinbox.database.NotificationEntity;
+import com.quietinbox.utils.AppExecutors;
+import com.quietinbox.utils.ConfigLoader;
+import com.quietinbox.utils.HashUtils;
+import com.quietinbox.utils.Metrics;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Listens to all notifications and processes them through QuietInbox
  */
 public class NotificationListenerService extends android.service.notification.NotificationListenerService {
     private static final String TAG = "NotifListener";
+    private static final long SHUTDOWN_TIMEOUT_MS = 5000;
 
     private AppDatabase database;
     private NotificationClassifier classifier;
     private ExecutorService executorService;
+    private int dedupeWindowMinutes;
+    private final Metrics metrics = Metrics.getInstance();
+
+    // Set on connect, cleared once the first notification after it is stored
+    private final AtomicBoolean firstAfterConnect = new AtomicBoolean();
 
     @Override
     public void onCreate() {
@@ -31,7 +44,8 @@ public class NotificationListenerService extends android.service.notification.No
 
         database = AppDatabase.getInstance(this);
         classifier = new NotificationClassifier(this);
-        executorService = Executors.newSingleThreadExecutor();
+        executorService = AppExecutors.getInstance().get(AppExecutors.Pool.INGEST);
+        dedupeWindowMinutes = ConfigLoader.getInstance(this).getDedupeWindowMinutes();
     }
 
     @Override
@@ -50,33 +64,50 @@ public class NotificationListenerService extends android.service.notification.No
             Log.d(TAG, "Notification received from: " + sbn.getPackageName());
 
             // Process in background
-            executorService.execute(() -> processNotification(sbn));
+            long postedAt = SystemClock.elapsedRealtime();
+            executorService.execute(() -> processNotification(sbn, postedAt));
 
         } catch (Exception e) {
             Log.e(TAG, "Error in onNotificationPosted", e);
         }
     }
 
-    private void processNotification(StatusBarNotification sbn) {
+    private void processNotification(StatusBarNotification sbn, long postedAt) {
         try {
-            // Classify the notification
-            NotificationClassifier.ClassificationResult result = classifier.classify(sbn);
-
-            // Get app name
-            String appName = getAppName(sbn.getPackageName());
+            String packageName = sbn.getPackageName();
 
-            // Extract notification details
+            // Extract notification details and content hash in one pass
             String title = getTitle(sbn);
             String text = getText(sbn);
+            long contentHash = HashUtils.fnv1a64(packageName, title, text);
+
+            // Fold identical repeats into the existing row; the window is measured from
+            // its first arrival, so a steady repeater still starts a new row once per window
+            long since = sbn.getPostTime() - TimeUnit.MINUTES.toMillis(dedupeWindowMinutes);
+            NotificationEntity duplicate =
+                database.notificationDao().findRecentDuplicate(packageName, contentHash, since);
+            if (duplicate != null) {
+                database.notificationDao().bumpRepeat(duplicate.id, sbn.getPostTime());
+                Log.d(TAG, "Duplicate notification folded into ID: " + duplicate.id);
+                applyAction(sbn, duplicate.action);
+                recordLatency(postedAt);
+                return;
+            }
+
+            // Classify the notification
+            NotificationClassifier.ClassificationResult result = classifier.classify(sbn);
 
             // Create entity
             NotificationEntity entity = new NotificationEntity();
-            entity.appPackage = sbn.getPackageName();
-            entity.appName = appName;
+            entity.appPackage = packageName;
+            entity.appName = getAppName(packageName);
             entity.title = title;
             entity.text = text;
             entity.topic = ""; // Could be extracted from notification category
             entity.receivedAt = sbn.getPostTime();
+            entity.lastSeen = entity.receivedAt;
+            entity.contentHash = contentHash;
+            entity.profileId = result.profileId;
             entity.action = result.action;
             entity.confidence = result.confidence;
             entity.isVip = result.isVip;
@@ -89,25 +120,35 @@ public class NotificationListenerService extends android.service.notification.No
             Log.d(TAG, "Notification classified as " + result.action +
                     " (confidence: " + result.confidence + ") - ID: " + id);
 
-            // Cancel notification based on action
-            if (result.action.equals(NotificationClassifier.ACTION_NEVER)) {
-                // Cancel spam/unwanted notifications
-                cancelNotification(sbn.getKey());
-            } else if (result.action.equals(NotificationClassifier.ACTION_LATER)) {
-                // Cancel and save for later
-                cancelNotification(sbn.getKey());
-                // Schedule for later delivery (could use WorkManager here)
-            }
-            // If ACTION_NOW, leave the notification as-is
-
-            // Broadcast update to UI
-            broadcastNotificationUpdate();
-
+            applyAction(sbn, result.action);
+            recordLatency(postedAt);
         } catch (Exception e) {
             Log.e(TAG, "Error processing notification", e);
         }
     }
 
+    private void recordLatency(long postedAt) {
+        long elapsed = SystemClock.elapsedRealtime() - postedAt;
+        metrics.record("ingest.latency", elapsed);
+        if (firstAfterConnect.compareAndSet(true, false)) {
+            metrics.record("ingest.first_latency", elapsed);
+            Log.d(TAG, "First notification after connect processed in " + elapsed + "ms");
+        }
+    }
+
+    private void applyAction(StatusBarNotification sbn, String action) {
+        // Cancel notification based on action
+        if (NotificationClassifier.ACTION_NEVER.equals(action)) {
+            // Cancel spam/unwanted notifications
+            cancelNotification(sbn.getKey());
+        } else if (NotificationClassifier.ACTION_LATER.equals(action)) {
+            // Cancel and save for later
+            cancelNotification(sbn.getKey());
+            // Schedule for later delivery (could use WorkManager here)
+        }
+        // If ACTION_NOW, leave the notification as-is
+    }
+
     @Override
     public void onNotificationRemoved(StatusBarNotification sbn) {
         // Handle notification removal if needed
@@ -141,17 +182,19 @@ public class NotificationListenerService extends android.service.notification.No
         }
     }
 
-    private void broadcastNotificationUpdate() {
-        Intent intent = new Intent("com.quietinbox.NOTIFICATION_UPDATE");
-        sendBroadcast(intent);
-    }
-
     @Override
     public void onDestroy() {
         super.onDestroy();
-        if (executorService != null) {
-            executorService.shutdown();
-        }
+        // This process only hosts the listener, so its pools go with it; queued ingest still
+        // drains and uses the classifier, which is closed only once the pools have stopped
+        NotificationClassifier closing = classifier;
+        AppExecutors.shutdown(SHUTDOWN_TIMEOUT_MS).thenRun(() -> {
+            if (closing != null) {
+                closing.close();
+            }
+            // Ingest metrics live in this process's registry; log them before it goes away
+            metrics.dump();
+        });
         Log.d(TAG, "NotificationListenerService destroyed");
     }
 
@@ -159,11 +202,39 @@ public class NotificationListenerService extends android.service.notification.No
     public void onListenerConnected() {
         super.onListenerConnected();
         Log.d(TAG, "NotificationListenerService connected");
+
+        // Warm up ahead of the first notification; ingest runs on the same thread, after it
+        firstAfterConnect.set(true);
+        AppExecutors.getInstance().execute(AppExecutors.Pool.INGEST, AppExecutors.Priority.HIGH, this::warmUp);
+    }
+
+    private void warmUp() {
+        long start = SystemClock.elapsedRealtime();
+        try {
+            database.getOpenHelper().getWritableDatabase();
+            classifier.warmUp();
+        } catch (Exception e) {
+            Log.e(TAG, "Error warming up classifier", e);
+        }
+        long elapsed = SystemClock.elapsedRealtime() - start;
+        metrics.record("ingest.warmup", elapsed);
+        Log.d(TAG, "Classifier warmed up in " + elapsed + "ms");
     }
 
     @Override
     public void onListenerDisconnected() {
         super.onListenerDisconnected();
         Log.d(TAG, "NotificationListenerService disconnected");
+        metrics.dump();
+    }
+
+    /**
+     * Ingest metrics on demand, since they are recorded in the listener process:
+     * adb shell dumpsys activity service com.quietinbox/.services.NotificationListenerService
+     */
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(fd, writer, args);
+        metrics.dump(writer);
     }
 }
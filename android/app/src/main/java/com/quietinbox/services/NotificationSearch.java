@@ -0,0 +1,339 @@
+package com.quietinbox.services;
+
+import android.content.Context;
+import android.graphics.Typeface;
+import android.os.SystemClock;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.style.StyleSpan;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.room.InvalidationTracker;
+
+import com.quietinbox.archive.ArchivedNotification;
+import com.quietinbox.archive.NotificationArchive;
+import com.quietinbox.database.AppDatabase;
+import com.quietinbox.database.NotificationEntity;
+import com.quietinbox.database.NotificationSearchDao;
+import com.quietinbox.database.NotificationSearchResult;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Full-text search over notification history
+ * Matches through the FTS4 index, ranks candidates by matchinfo and pages the ranked list.
+ * Paging past the last live match scans the cold archive once for older history.
+ */
+public class NotificationSearch {
+    private static final String TAG = "NotificationSearch";
+
+    // Upper bound on FTS candidates ranked per query, keeps matchinfo cost flat on large histories
+    private static final int MAX_CANDIDATES = 500;
+    private static final long SLOW_QUERY_MS = 50;
+
+    // Column weights in matchinfo order: title, text
+    private static final double[] COLUMN_WEIGHTS = {2.0, 1.0};
+    private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}]+");
+
+    private final AppDatabase database;
+    private final NotificationSearchDao searchDao;
+    private final NotificationArchive archive;
+    private final InvalidationTracker.Observer invalidationObserver;
+    private boolean observing;
+
+    // Ranked results of the last query, dropped whenever notifications change
+    private String cachedQuery;
+    private List<NotificationSearchResult> cachedResults = Collections.emptyList();
+    private boolean archiveSearched;
+
+    public NotificationSearch(Context context) {
+        this.database = AppDatabase.getInstance(context);
+        this.searchDao = database.notificationSearchDao();
+        this.archive = new NotificationArchive(context);
+        this.invalidationObserver = new InvalidationTracker.Observer("notifications") {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                clearCache();
+            }
+        };
+    }
+
+    /**
+     * Stop tracking notification changes; call off the main thread when the owner is destroyed
+     */
+    public synchronized void close() {
+        if (observing) {
+            database.getInvalidationTracker().removeObserver(invalidationObserver);
+            observing = false;
+        }
+        clearCache();
+    }
+
+    /**
+     * Return one page of ranked results for a free-text query
+     * Must be called off the main thread
+     */
+    public synchronized List<NotificationSearchResult> search(String query, int page, int pageSize) {
+        String matchQuery = toMatchQuery(query);
+        if (matchQuery == null) {
+            return Collections.emptyList();
+        }
+
+        if (!observing) {
+            // Registered on first search rather than in the constructor, since syncing
+            // Room's tracking triggers touches the database
+            database.getInvalidationTracker().addObserver(invalidationObserver);
+            observing = true;
+        }
+
+        if (!matchQuery.equals(cachedQuery)) {
+            long start = SystemClock.elapsedRealtime();
+
+            List<NotificationSearchResult> results = searchDao.search(matchQuery, MAX_CANDIDATES);
+            for (NotificationSearchResult result : results) {
+                result.score = score(result.matchInfo);
+            }
+            Collections.sort(results, (a, b) -> {
+                int byScore = Double.compare(b.score, a.score);
+                return byScore != 0 ? byScore
+                    : Long.compare(b.notification.receivedAt, a.notification.receivedAt);
+            });
+
+            cachedQuery = matchQuery;
+            cachedResults = results;
+            archiveSearched = false;
+
+            long elapsed = SystemClock.elapsedRealtime() - start;
+            if (elapsed > SLOW_QUERY_MS) {
+                Log.w(TAG, "Slow search (" + elapsed + " ms) for " + results.size() + " candidates");
+            }
+        }
+
+        int from = page * pageSize;
+        if (from + pageSize > cachedResults.size() && !archiveSearched) {
+            // Live matches run out on this page; older history continues from the archive
+            List<NotificationSearchResult> combined = new ArrayList<>(cachedResults);
+            combined.addAll(searchArchive(query));
+            cachedResults = combined;
+            archiveSearched = true;
+        }
+        if (from >= cachedResults.size()) {
+            return Collections.emptyList();
+        }
+        int to = Math.min(from + pageSize, cachedResults.size());
+        return new ArrayList<>(cachedResults.subList(from, to));
+    }
+
+    private synchronized void clearCache() {
+        cachedQuery = null;
+        cachedResults = Collections.emptyList();
+        archiveSearched = false;
+    }
+
+    /**
+     * Newest archived rows whose title or text has every query term as a word prefix,
+     * the same match the FTS query makes, newest first
+     * Results carry negative IDs, so they never collide with live rows.
+     */
+    private List<NotificationSearchResult> searchArchive(String query) {
+        List<String> terms = terms(query);
+        ArrayDeque<ArchivedNotification> matches = new ArrayDeque<>();
+        long start = SystemClock.elapsedRealtime();
+        try {
+            // Segments are scanned oldest first, so the newest matches are the last ones kept
+            archive.scan(0, Long.MAX_VALUE, row -> {
+                if (matchesAll(terms, row.title, row.text)) {
+                    if (matches.size() == MAX_CANDIDATES) {
+                        matches.pollFirst();
+                    }
+                    matches.addLast(row);
+                }
+                return true;
+            });
+        } catch (IOException e) {
+            Log.w(TAG, "Archive search failed", e);
+        }
+
+        List<NotificationSearchResult> results = new ArrayList<>(matches.size());
+        long id = 0;
+        while (!matches.isEmpty()) {
+            ArchivedNotification row = matches.pollLast();
+            NotificationEntity notification = new NotificationEntity();
+            notification.id = --id;
+            notification.appPackage = row.appPackage;
+            notification.appName = row.appPackage;
+            notification.title = row.title;
+            notification.text = row.text;
+            notification.action = row.action;
+            notification.receivedAt = row.receivedAt;
+            notification.lastSeen = row.receivedAt;
+            notification.synced = true;
+
+            NotificationSearchResult result = new NotificationSearchResult();
+            result.notification = notification;
+            result.snippet = markTerms(row.text, terms);
+            result.titleSnippet = markTerms(row.title, terms);
+            results.add(result);
+        }
+        Collections.sort(results, (a, b) ->
+            Long.compare(b.notification.receivedAt, a.notification.receivedAt));
+
+        long elapsed = SystemClock.elapsedRealtime() - start;
+        if (elapsed > SLOW_QUERY_MS) {
+            Log.w(TAG, "Slow archive search (" + elapsed + " ms) for " + results.size() + " matches");
+        }
+        return results;
+    }
+
+    static boolean matchesAll(List<String> terms, String title, String text) {
+        for (String term : terms) {
+            if (!hasWordWithPrefix(title, term) && !hasWordWithPrefix(text, term)) {
+                return false;
+            }
+        }
+        return !terms.isEmpty();
+    }
+
+    private static boolean hasWordWithPrefix(String value, String prefix) {
+        if (value == null) {
+            return false;
+        }
+        Matcher words = WORD.matcher(value);
+        while (words.find()) {
+            if (words.group().toLowerCase(Locale.ROOT).startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Wrap words starting with a query term in snippet markers, as FTS snippet() does
+     */
+    static String markTerms(String value, List<String> terms) {
+        if (value == null) {
+            return null;
+        }
+        StringBuilder marked = new StringBuilder(value.length() + 16);
+        Matcher words = WORD.matcher(value);
+        int index = 0;
+        while (words.find()) {
+            String word = words.group().toLowerCase(Locale.ROOT);
+            for (String term : terms) {
+                if (word.startsWith(term)) {
+                    marked.append(value, index, words.start())
+                        .append(NotificationSearchDao.SNIPPET_START)
+                        .append(words.group())
+                        .append(NotificationSearchDao.SNIPPET_END);
+                    index = words.end();
+                    break;
+                }
+            }
+        }
+        return marked.append(value, index, value.length()).toString();
+    }
+
+    /**
+     * Build an FTS4 MATCH expression from user input
+     * Every token becomes a prefix term so partial words still match
+     */
+    static String toMatchQuery(String query) {
+        StringBuilder match = new StringBuilder();
+        for (String term : terms(query)) {
+            if (match.length() > 0) {
+                match.append(' ');
+            }
+            match.append(term).append('*');
+        }
+        return match.length() > 0 ? match.toString() : null;
+    }
+
+    /**
+     * Lowercased words of the user input, the prefix terms of a query
+     */
+    static List<String> terms(String query) {
+        List<String> terms = new ArrayList<>();
+        if (query == null) {
+            return terms;
+        }
+        for (String token : query.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                terms.add(token);
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Weighted term-frequency score from a matchinfo('pcx') blob
+     */
+    static double score(byte[] matchInfo) {
+        if (matchInfo == null || matchInfo.length < 8) {
+            return 0;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder());
+        int phraseCount = buffer.getInt(0);
+        int columnCount = buffer.getInt(4);
+
+        double score = 0;
+        for (int phrase = 0; phrase < phraseCount; phrase++) {
+            for (int column = 0; column < columnCount; column++) {
+                int offset = 4 * (2 + 3 * (phrase * columnCount + column));
+                if (offset + 8 > matchInfo.length) {
+                    return score;
+                }
+                int hitsThisRow = buffer.getInt(offset);
+                int hitsAllRows = buffer.getInt(offset + 4);
+                if (hitsThisRow > 0 && hitsAllRows > 0) {
+                    double weight = column < COLUMN_WEIGHTS.length ? COLUMN_WEIGHTS[column] : 1.0;
+                    score += weight * hitsThisRow / hitsAllRows;
+                }
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Turn a marked-up snippet into bold highlighted text
+     */
+    public static CharSequence highlight(String snippet) {
+        if (snippet == null) {
+            return null;
+        }
+
+        SpannableStringBuilder builder = new SpannableStringBuilder();
+        int index = 0;
+        while (index < snippet.length()) {
+            int start = snippet.indexOf(NotificationSearchDao.SNIPPET_START, index);
+            if (start < 0) {
+                builder.append(snippet, index, snippet.length());
+                break;
+            }
+            int end = snippet.indexOf(NotificationSearchDao.SNIPPET_END, start);
+            if (end < 0) {
+                builder.append(snippet, index, start).append(snippet, start + 1, snippet.length());
+                break;
+            }
+
+            builder.append(snippet, index, start);
+            int spanStart = builder.length();
+            builder.append(snippet, start + 1, end);
+            builder.setSpan(new StyleSpan(Typeface.BOLD), spanStart, builder.length(),
+                Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+            index = end + 1;
+        }
+        return builder;
+    }
+}
@@ -0,0 +1,171 @@
+package com.quietinbox.services;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.quietinbox.archive.NotificationArchive;
+import com.quietinbox.database.AppDatabase;
+import com.quietinbox.database.NotificationStatsEntity;
+import com.quietinbox.database.UserEntity;
+import com.quietinbox.utils.ConfigLoader;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodic cleanup of notification history past notification.retention.days
+ * Rolls expired rows into daily stats, deletes them in bounded chunks,
+ * then reclaims free pages and checkpoints the WAL.
+ * For Pro users, rows past notification.archive.after.days move to the cold archive first.
+ * Rows not yet pushed are kept until a sync uploads them, unless nobody is signed in.
+ */
+public class RetentionWorker extends Worker {
+    private static final String TAG = "RetentionWorker";
+    private static final String WORK_NAME = "notification_retention";
+
+    // Rows per delete transaction, keeps each hold on the write lock short
+    private static final int CHUNK_SIZE = 500;
+    // Pause between chunks so ingest writes can interleave
+    private static final long CHUNK_PAUSE_MS = 20;
+    private static final int INCREMENTAL_VACUUM_PAGES = 2000;
+
+    public RetentionWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Schedule the daily retention job, only while the device is idle and charging
+     */
+    public static void schedule(Context context) {
+        Constraints constraints = new Constraints.Builder()
+            .setRequiresDeviceIdle(true)
+            .setRequiresCharging(true)
+            .build();
+
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(
+                RetentionWorker.class, 1, TimeUnit.DAYS)
+            .setConstraints(constraints)
+            .build();
+
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(
+            WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        try {
+            AppDatabase database = AppDatabase.getInstance(getApplicationContext());
+            ConfigLoader config = ConfigLoader.getInstance(getApplicationContext());
+            int retentionDays = config.getNotificationRetentionDays();
+            long now = System.currentTimeMillis();
+            long cutoff = now - TimeUnit.DAYS.toMillis(retentionDays);
+
+            int deleted = 0;
+            UserEntity user = database.userDao().getUser();
+            boolean signedIn = user != null && user.accessToken != null;
+            if (signedIn && user.isPro) {
+                deleted += archive(database, config, now);
+            }
+            deleted += deleteExpired(database, cutoff, Long.MAX_VALUE, !signedIn);
+            if (isStopped()) {
+                Log.d(TAG, "Stopped after deleting " + deleted + " notifications");
+                return Result.success();
+            }
+
+            compact(database);
+
+            Log.i(TAG, "Retention cleanup removed " + deleted + " notifications older than "
+                + retentionDays + " days");
+            return Result.success();
+
+        } catch (Exception e) {
+            Log.e(TAG, "Retention cleanup failed", e);
+            return Result.retry();
+        }
+    }
+
+    private int archive(AppDatabase database, ConfigLoader config, long now) throws Exception {
+        NotificationArchive archive = new NotificationArchive(getApplicationContext());
+        int deleted = 0;
+
+        // Finish deleting rows a previous interrupted run already archived, so every
+        // live row the append below finds is one no segment holds yet
+        NotificationArchive.Watermark watermark = archive.getWatermark();
+        if (watermark != null) {
+            deleted += deleteExpired(database, watermark.cutoff, watermark.maxRowId, false);
+        }
+        if (isStopped()) {
+            return deleted;
+        }
+
+        long archiveCutoff = now - TimeUnit.DAYS.toMillis(config.getArchiveAfterDays());
+        watermark = archive.append(database, archiveCutoff, this::isStopped);
+        if (watermark != null) {
+            deleted += deleteExpired(database, watermark.cutoff, watermark.maxRowId, false);
+        }
+
+        archive.prune(now - TimeUnit.DAYS.toMillis(config.getArchiveRetentionDays()));
+        return deleted;
+    }
+
+    private int deleteExpired(AppDatabase database, long cutoff, long maxId, boolean includeUnsynced)
+            throws InterruptedException {
+        int total = 0;
+        while (!isStopped()) {
+            Integer deleted = database.runInTransaction(() -> {
+                List<Long> ids = database.notificationDao().getIdsOlderThan(cutoff, maxId, includeUnsynced, CHUNK_SIZE);
+                if (ids.isEmpty()) {
+                    return 0;
+                }
+                rollUp(database, ids);
+                return database.notificationDao().deleteByIds(ids);
+            });
+
+            if (deleted == 0) {
+                break;
+            }
+            total += deleted;
+            Thread.sleep(CHUNK_PAUSE_MS);
+        }
+        return total;
+    }
+
+    private void rollUp(AppDatabase database, List<Long> ids) {
+        List<NotificationStatsEntity> aggregates = database.notificationDao().aggregateByIds(ids);
+        for (NotificationStatsEntity aggregate : aggregates) {
+            int count = aggregate.count;
+            int vipCount = aggregate.vipCount;
+
+            aggregate.count = 0;
+            aggregate.vipCount = 0;
+            database.notificationStatsDao().insertIfAbsent(aggregate);
+            database.notificationStatsDao().addCounts(
+                aggregate.day, aggregate.appPackage, aggregate.action, count, vipCount);
+        }
+    }
+
+    private void compact(AppDatabase database) {
+        SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+
+        // Bounded, and a no-op on files created before AppDatabase enabled incremental mode
+        queryInt(db, "PRAGMA incremental_vacuum(" + INCREMENTAL_VACUUM_PAGES + ")");
+        queryInt(db, "PRAGMA wal_checkpoint(TRUNCATE)");
+    }
+
+    private static int queryInt(SupportSQLiteDatabase db, String sql) {
+        try (Cursor cursor = db.query(sql)) {
+            return cursor.moveToFirst() ? cursor.getInt(0) : -1;
+        }
+    }
+}
@@ -1,21 +1,29 @@
 package com.quietinbox.services;
 
 import android.content.Context;
+import android.os.SystemClock;
 import android.util.Log;
 
 import com.quietinbox.api.ApiClient;
 import com.quietinbox.api.ApiService;
 import com.quietinbox.database.*;
 import com.quietinbox.models.*;
+import com.quietinbox.utils.AppExecutors;
 import com.quietinbox.utils.ConfigLoader;
+import com.quietinbox.utils.HashUtils;
+import com.quietinbox.utils.NetworkMonitor;
+import com.quietinbox.utils.PrivacyKey;
 
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.function.Supplier;
 
 import retrofit2.Call;
+import retrofit2.Callback;
 import retrofit2.Response;
 
 /**
@@ -24,6 +32,10 @@ import retrofit2.Response;
  */
 public class SyncManager {
     private static final String TAG = "SyncManager";
+    private static final int PULL_PAGE_SIZE = 200;
+    private static final int OUTBOX_BATCH_SIZE = 100;
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+    private static final long MAX_BACKOFF_MS = 60 * 60 * 1000L;
     private static SyncManager instance;
 
     private final Context context;
@@ -31,13 +43,19 @@ public class SyncManager {
     private final ApiService apiService;
     private final ExecutorService executorService;
     private final ConfigLoader config;
+    private final NetworkMonitor networkMonitor;
+    private final Random random = new Random();
+    // Sync currently running, shared by every caller that arrives while it is in flight
+    private CompletableFuture<Void> inFlight;
 
     private SyncManager(Context context) {
         this.context = context.getApplicationContext();
         this.database = AppDatabase.getInstance(context);
         this.apiService = ApiClient.getInstance(context).getService();
-        this.executorService = Executors.newSingleThreadExecutor();
+        this.executorService = AppExecutors.getInstance().get(AppExecutors.Pool.NETWORK);
         this.config = ConfigLoader.getInstance(context);
+        this.networkMonitor = NetworkMonitor.getInstance(context);
+        networkMonitor.addListener(this::onNetworkChanged);
     }
 
     public static synchronized SyncManager getInstance(Context context) {
@@ -49,163 +67,743 @@ public class SyncManager {
 
     /**
      * Sync all pending changes to server
+     * Joins the in-flight sync if one is already running
      */
     public void syncAll(SyncCallback callback) {
-        executorService.execute(() -> {
-            try {
-                if (!isNetworkAvailable()) {
-                    Log.w(TAG, "Network not available, skipping sync");
-                    if (callback != null) callback.onError("Network not available");
-                    return;
-                }
+        startOrJoinSync().whenComplete((result, error) -> {
+            if (error == null) {
+                if (callback != null) callback.onSuccess();
+            } else {
+                Throwable cause = unwrap(error);
+                Log.e(TAG, "Sync error", cause);
+                if (callback != null) callback.onError(cause.getMessage());
+            }
+        });
+    }
 
-                UserEntity user = database.userDao().getUser();
-                if (user == null || user.accessToken == null) {
-                    Log.w(TAG, "User not logged in, skipping sync");
-                    if (callback != null) callback.onError("Not logged in");
-                    return;
-                }
+    /**
+     * Run a full sync and block until it finishes
+     * Concurrent callers share one run and all see its result
+     */
+    public void syncNow() throws IOException {
+        try {
+            startOrJoinSync().join();
+        } catch (CompletionException e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Sync failed", cause);
+        }
+    }
+
+    private synchronized CompletableFuture<Void> startOrJoinSync() {
+        if (inFlight != null) {
+            Log.d(TAG, "Joining in-flight sync");
+            return inFlight;
+        }
+        CompletableFuture<Void> run = startSync();
+        inFlight = run;
+        run.whenComplete((result, error) -> clearInFlight(run));
+        return run;
+    }
 
-                String token = "Bearer " + user.accessToken;
+    private synchronized void clearInFlight(CompletableFuture<Void> run) {
+        if (inFlight == run) {
+            inFlight = null;
+        }
+    }
 
-                // Sync profiles
-                syncProfiles(token);
+    /**
+     * Outbox push then pull run as one chain, notifications alongside it.
+     * Pull waits for the outbox so server IDs of newly pushed entities are mapped
+     * locally before their echoes arrive.
+     */
+    private CompletableFuture<Void> startSync() {
+        long start = SystemClock.elapsedRealtime();
+        return CompletableFuture.supplyAsync(() -> {
+            if (!isNetworkAvailable()) {
+                throw new CompletionException(new IOException("Network not available"));
+            }
+            UserEntity user = database.userDao().getUser();
+            if (user == null || user.accessToken == null) {
+                throw new CompletionException(new NotLoggedInException());
+            }
+            return user;
+        }, executorService).thenCompose(user -> {
+            String token = "Bearer " + user.accessToken;
+            // Local row IDs restart with a new database, so keys and local_ids are scoped to it
+            String installId = user.installId;
+
+            // Push queued profile, VIP and dismissal changes, then pull changes made elsewhere
+            CompletableFuture<Void> entities =
+                runPhase("outbox", () -> drainOutbox(token, installId))
+                    .thenCompose(v -> runPhase("pull", () -> pullChanges(token, user.pullCursor)));
+
+            // Sync notifications, unless bulk uploads wait for an unmetered network
+            CompletableFuture<Void> notifications;
+            if (shouldDeferBulkUpload()) {
+                Log.d(TAG, "Metered network, deferring notification upload");
+                notifications = CompletableFuture.completedFuture(null);
+            } else {
+                notifications = runPhase("notifications", () -> syncNotifications(token, installId));
+            }
 
-                // Sync VIPs
-                syncVIPs(token);
+            return CompletableFuture.allOf(entities, notifications);
+        }).thenRun(() -> {
+            // Update last sync time
+            database.userDao().updateLastSync(System.currentTimeMillis());
+            Log.i(TAG, "Sync completed successfully in " + (SystemClock.elapsedRealtime() - start) + " ms");
+        });
+    }
 
-                // Sync notifications
-                syncNotifications(token);
+    /**
+     * Start a phase on the sync executor; timed until its future completes, and no
+     * pool thread blocks on its requests in between
+     */
+    private CompletableFuture<Void> runPhase(String name, Supplier<CompletableFuture<Void>> phase) {
+        long start = SystemClock.elapsedRealtime();
+        return CompletableFuture.supplyAsync(phase, executorService)
+            .thenCompose(future -> future)
+            .whenComplete((result, error) -> Log.d(TAG,
+                "Sync phase " + name + " took " + (SystemClock.elapsedRealtime() - start) + " ms"));
+    }
 
-                // Update last sync time
-                database.userDao().updateLastSync(System.currentTimeMillis());
+    private static Throwable unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
 
-                Log.i(TAG, "Sync completed successfully");
-                if (callback != null) callback.onSuccess();
+    /**
+     * Number of local changes still waiting to be pushed
+     */
+    public int getPendingCount() {
+        return database.notificationDao().getUnsyncedCount()
+            + database.syncQueueDao().getPendingCount();
+    }
 
-            } catch (Exception e) {
-                Log.e(TAG, "Sync error", e);
-                if (callback != null) callback.onError(e.getMessage());
+    /**
+     * Build push items for a chunk according to the privacy settings:
+     * full content, per-notification metadata, or hourly per-app histograms
+     */
+    private List<SyncItem> buildNotificationItems(List<NotificationEntity> chunk) {
+        if (config.isContentUploadEnabled()) {
+            List<SyncItem> items = new ArrayList<>(chunk.size());
+            for (NotificationEntity notif : chunk) {
+                SyncItem.Notification item = new SyncItem.Notification(String.valueOf(notif.id));
+                item.app_package = notif.appPackage;
+                item.title = notif.title;
+                item.text = notif.text;
+                item.action = notif.action;
+                item.confidence = notif.confidence;
+                item.received_at = notif.receivedAt;
+                item.repeat_count = notif.repeatCount;
+                items.add(item);
             }
-        });
+            return items;
+        }
+
+        if (config.isHourlyAggregationEnabled()) {
+            return buildHourlyHistograms(chunk);
+        }
+
+        // Metadata only: title and text never leave the device, not even as a sketch,
+        // since a short text (an OTP, a one-word reply) could be brute-forced from one
+        byte[] senderKey = PrivacyKey.getInstance(context).getSenderHashKey();
+        List<SyncItem> items = new ArrayList<>(chunk.size());
+        for (NotificationEntity notif : chunk) {
+            SyncItem.NotificationMeta item = new SyncItem.NotificationMeta(String.valueOf(notif.id));
+            item.app_package = notif.appPackage;
+            item.received_at = notif.receivedAt;
+            item.action = notif.action;
+            item.confidence = notif.confidence;
+            item.sender_hash = HashUtils.hmacSha256Hex(senderKey, notif.appPackage, notif.title);
+            item.repeat_count = notif.repeatCount;
+            items.add(item);
+        }
+        return items;
     }
 
-    private void syncProfiles(String token) {
-        try {
-            List<ProfileEntity> unsyncedProfiles = database.profileDao().getUnsyncedProfiles();
-
-            for (ProfileEntity profile : unsyncedProfiles) {
-                try {
-                    Profile apiProfile = new Profile();
-                    apiProfile.name = profile.name;
-                    apiProfile.quiet_hours_start = profile.quietHoursStart;
-                    apiProfile.quiet_hours_end = profile.quietHoursEnd;
-                    apiProfile.rules_json = profile.rulesJson;
-                    apiProfile.is_active = profile.isActive;
-
-                    Response<Profile> response;
-                    if (profile.serverId == null) {
-                        // Create new profile
-                        response = apiService.createProfile(token, apiProfile).execute();
-                    } else {
-                        // Update existing profile
-                        response = apiService.updateProfile(token, profile.serverId, apiProfile).execute();
+    /**
+     * One bucket per hour and app touched by the chunk, counted over every row of
+     * that hour, so a bucket pushed again (from a later chunk or after a folded
+     * repeat) replaces the earlier one on the server instead of adding to it
+     */
+    private List<SyncItem> buildHourlyHistograms(List<NotificationEntity> chunk) {
+        // Keyed by hour bucket and package; insertion order keeps output stable
+        Map<String, SyncItem.NotificationHistogram> buckets = new LinkedHashMap<>();
+        for (NotificationEntity notif : chunk) {
+            long hourStart = notif.receivedAt / HOUR_MS * HOUR_MS;
+            String key = "hist-" + hourStart + "-" + notif.appPackage;
+            if (buckets.containsKey(key)) {
+                continue;
+            }
+
+            SyncItem.NotificationHistogram bucket = new SyncItem.NotificationHistogram(key);
+            bucket.app_package = notif.appPackage;
+            bucket.hour_start = hourStart;
+            bucket.first_local_id = notif.id;
+            bucket.actions = new HashMap<>();
+            for (NotificationEntity row
+                    : database.notificationDao().getForApp(notif.appPackage, hourStart, hourStart + HOUR_MS)) {
+                bucket.first_local_id = Math.min(bucket.first_local_id, row.id);
+                bucket.count++;
+                if (row.isVip) {
+                    bucket.vip_count++;
+                }
+                bucket.confidence_sum += row.confidence;
+                bucket.repeat_count += row.repeatCount;
+                Integer actionCount = bucket.actions.get(row.action);
+                bucket.actions.put(row.action, actionCount != null ? actionCount + 1 : 1);
+            }
+            buckets.put(key, bucket);
+        }
+        return new ArrayList<>(buckets.values());
+    }
+
+    /**
+     * Push the outbox batch by batch; each batch's requests run together and the
+     * next batch is chained on their completion, so no pool thread waits on them
+     */
+    private CompletableFuture<Void> drainOutbox(String token, String installId) {
+        // Items left PROCESSING by an interrupted run are retried
+        database.syncQueueDao().resetProcessing();
+        return drainOutboxBatch(token, installId, 0);
+    }
+
+    private CompletableFuture<Void> drainOutboxBatch(String token, String installId, int completed) {
+        List<SyncQueueEntity> batch =
+            database.syncQueueDao().getReadyItems(System.currentTimeMillis(), OUTBOX_BATCH_SIZE);
+        if (batch.isEmpty()) {
+            logDrained(completed);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        List<Long> batchIds = new ArrayList<>(batch.size());
+        List<SyncQueueEntity> profiles = new ArrayList<>();
+        List<SyncQueueEntity> vips = new ArrayList<>();
+        List<SyncQueueEntity> dismissals = new ArrayList<>();
+        for (SyncQueueEntity item : batch) {
+            batchIds.add(item.id);
+            if (SyncOutbox.TYPE_PROFILE.equals(item.entityType)) {
+                profiles.add(item);
+            } else if (SyncOutbox.TYPE_VIP.equals(item.entityType)) {
+                vips.add(item);
+            } else {
+                dismissals.add(item);
+            }
+        }
+        database.syncQueueDao().markProcessing(batchIds);
+
+        // The three entity types are independent, so their requests are in flight together
+        List<Long> done = Collections.synchronizedList(new ArrayList<>());
+        return CompletableFuture.allOf(
+            syncProfiles(token, profiles, done),
+            syncVIPs(token, vips, done),
+            syncDismissals(token, installId, dismissals, done)
+        ).thenComposeAsync(v -> {
+            int total = completed;
+            if (!done.isEmpty()) {
+                database.syncQueueDao().deleteByIds(done);
+                total += done.size();
+            }
+            if (batch.size() < OUTBOX_BATCH_SIZE) {
+                logDrained(total);
+                return CompletableFuture.completedFuture(null);
+            }
+            return drainOutboxBatch(token, installId, total);
+        }, executorService);
+    }
+
+    private static void logDrained(int completed) {
+        if (completed > 0) {
+            Log.d(TAG, "Drained " + completed + " outbox operations");
+        }
+    }
+
+    private CompletableFuture<Void> syncProfiles(String token, List<SyncQueueEntity> items, List<Long> done) {
+        if (items.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        Map<String, SyncQueueEntity> queueByClientId = new HashMap<>();
+        Map<String, ProfileEntity> profilesByClientId = new HashMap<>();
+        List<ProfileBatchRequest.Item> batch = new ArrayList<>();
+        for (SyncQueueEntity item : items) {
+            if (SyncOutbox.OP_DELETE.equals(item.operation)) {
+                // SyncOutbox refuses these; park any left in the queue as failed, never as sent
+                onOutboxFailure(item, true);
+                continue;
+            }
+            ProfileEntity profile = database.profileDao().getProfileById(item.entityId);
+            if (profile == null) {
+                // Deleted locally before it was pushed
+                done.add(item.id);
+                continue;
+            }
+
+            ProfileBatchRequest.Item apiProfile = new ProfileBatchRequest.Item();
+            apiProfile.client_id = String.valueOf(profile.id);
+            apiProfile.id = profile.serverId != null ? profile.serverId : 0;
+            apiProfile.name = profile.name;
+            apiProfile.quiet_hours_start = profile.quietHoursStart;
+            apiProfile.quiet_hours_end = profile.quietHoursEnd;
+            apiProfile.rules_json = profile.rulesJson;
+            apiProfile.is_active = profile.isActive;
+
+            batch.add(apiProfile);
+            queueByClientId.put(apiProfile.client_id, item);
+            profilesByClientId.put(apiProfile.client_id, profile);
+        }
+        if (batch.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return enqueue(apiService.batchProfiles(token, new ProfileBatchRequest(batch)))
+            .handleAsync((response, error) -> {
+                if (error != null) {
+                    Log.e(TAG, "Error syncing profiles", error);
+                    for (SyncQueueEntity item : queueByClientId.values()) {
+                        onOutboxFailure(item, false);
                     }
+                    return null;
+                }
+                if (!response.isSuccessful() || response.body() == null || response.body().results == null) {
+                    boolean permanent = isPermanentFailure(response.code());
+                    for (SyncQueueEntity item : queueByClientId.values()) {
+                        onOutboxFailure(item, permanent);
+                    }
+                    return null;
+                }
 
-                    if (response.isSuccessful() && response.body() != null) {
-                        profile.serverId = response.body().id;
-                        profile.synced = true;
-                        database.profileDao().update(profile);
-                        Log.d(TAG, "Profile synced: " + profile.name);
+                // Map server IDs back in one transaction
+                List<BatchResponse.Result> results = response.body().results;
+                database.runInTransaction(() -> {
+                    for (BatchResponse.Result result : results) {
+                        SyncQueueEntity item = queueByClientId.get(result.client_id);
+                        ProfileEntity profile = profilesByClientId.get(result.client_id);
+                        if (item == null || profile == null) {
+                            continue;
+                        }
+                        if (!"ok".equals(result.status) || result.id == null) {
+                            Log.w(TAG, "Profile " + profile.name + " rejected: " + result.detail);
+                            onOutboxFailure(item, true);
+                            continue;
+                        }
+                        boolean synced = database.syncQueueDao()
+                            .findPending(SyncOutbox.TYPE_PROFILE, profile.id) == null;
+                        database.profileDao().updateServerId(profile.id, result.id, synced);
+                        done.add(item.id);
                     }
-                } catch (IOException e) {
-                    Log.e(TAG, "Error syncing profile: " + profile.name, e);
+                });
+                Log.d(TAG, "Synced " + results.size() + " profiles in one batch");
+                return null;
+            }, executorService);
+    }
+
+    private CompletableFuture<Void> syncVIPs(String token, List<SyncQueueEntity> items, List<Long> done) {
+        if (items.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        Map<String, SyncQueueEntity> queueByClientId = new HashMap<>();
+        Map<String, VIPEntity> vipsByClientId = new HashMap<>();
+        List<VIPBatchRequest.Item> batch = new ArrayList<>();
+        List<Long> deletedIds = new ArrayList<>();
+        List<SyncQueueEntity> deletes = new ArrayList<>();
+        for (SyncQueueEntity item : items) {
+            if (SyncOutbox.OP_DELETE.equals(item.operation)) {
+                if (item.dataJson == null) {
+                    // Never reached the server
+                    done.add(item.id);
+                } else {
+                    deletedIds.add(Long.parseLong(item.dataJson));
+                    deletes.add(item);
                 }
+                continue;
             }
-        } catch (Exception e) {
-            Log.e(TAG, "Error syncing profiles", e);
+
+            VIPEntity vip = database.vipDao().getVIPById(item.entityId);
+            if (vip == null) {
+                done.add(item.id);
+                continue;
+            }
+
+            VIPBatchRequest.Item apiVip = new VIPBatchRequest.Item();
+            apiVip.client_id = String.valueOf(vip.id);
+            apiVip.id = vip.serverId != null ? vip.serverId : 0;
+            apiVip.app_package = vip.appPackage;
+            apiVip.identifier = vip.identifier;
+            apiVip.priority = vip.priority;
+            apiVip.bypass_quiet_hours = vip.bypassQuietHours;
+
+            batch.add(apiVip);
+            queueByClientId.put(apiVip.client_id, item);
+            vipsByClientId.put(apiVip.client_id, vip);
+        }
+        if (batch.isEmpty() && deletedIds.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
         }
+
+        return enqueue(apiService.batchVIPs(token, new VIPBatchRequest(batch, deletedIds)))
+            .handleAsync((response, error) -> {
+                if (error != null) {
+                    Log.e(TAG, "Error syncing VIPs", error);
+                    for (SyncQueueEntity item : queueByClientId.values()) {
+                        onOutboxFailure(item, false);
+                    }
+                    for (SyncQueueEntity item : deletes) {
+                        onOutboxFailure(item, false);
+                    }
+                    return null;
+                }
+                if (!response.isSuccessful() || response.body() == null || response.body().results == null) {
+                    boolean permanent = isPermanentFailure(response.code());
+                    for (SyncQueueEntity item : queueByClientId.values()) {
+                        onOutboxFailure(item, permanent);
+                    }
+                    for (SyncQueueEntity item : deletes) {
+                        onOutboxFailure(item, permanent);
+                    }
+                    return null;
+                }
+
+                for (SyncQueueEntity item : deletes) {
+                    done.add(item.id);
+                }
+
+                // Map server IDs back in one transaction
+                List<BatchResponse.Result> results = response.body().results;
+                database.runInTransaction(() -> {
+                    for (BatchResponse.Result result : results) {
+                        SyncQueueEntity item = queueByClientId.get(result.client_id);
+                        VIPEntity vip = vipsByClientId.get(result.client_id);
+                        if (item == null || vip == null) {
+                            continue;
+                        }
+                        if (!"ok".equals(result.status) || result.id == null) {
+                            Log.w(TAG, "VIP " + vip.displayName + " rejected: " + result.detail);
+                            onOutboxFailure(item, true);
+                            continue;
+                        }
+                        boolean synced = database.syncQueueDao()
+                            .findPending(SyncOutbox.TYPE_VIP, vip.id) == null;
+                        database.vipDao().updateServerId(vip.id, result.id, synced);
+                        done.add(item.id);
+                    }
+                });
+                Log.d(TAG, "Synced " + results.size() + " VIPs and " + deletedIds.size() + " deletes in one batch");
+                return null;
+            }, executorService);
     }
 
-    private void syncVIPs(String token) {
-        try {
-            List<VIPEntity> unsyncedVIPs = database.vipDao().getUnsyncedVIPs();
-
-            for (VIPEntity vip : unsyncedVIPs) {
-                try {
-                    VIP apiVip = new VIP();
-                    apiVip.app_package = vip.appPackage;
-                    apiVip.identifier = vip.identifier;
-                    apiVip.priority = vip.priority;
-                    apiVip.bypass_quiet_hours = vip.bypassQuietHours;
-
-                    Response<VIP> response = apiService.createVIP(token, apiVip).execute();
-
-                    if (response.isSuccessful() && response.body() != null) {
-                        vip.serverId = response.body().id;
-                        vip.synced = true;
-                        database.vipDao().update(vip);
-                        Log.d(TAG, "VIP synced: " + vip.displayName);
+    private CompletableFuture<Void> syncDismissals(String token, String installId,
+                                                   List<SyncQueueEntity> items, List<Long> done) {
+        if (items.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        List<SyncItem> pushItems = new ArrayList<>(items.size());
+        for (SyncQueueEntity item : items) {
+            SyncItem.Dismissal dismissal = new SyncItem.Dismissal("dismissal-" + item.entityId);
+            dismissal.notification_local_id = item.entityId;
+            dismissal.dismissed_at = item.createdAt;
+            pushItems.add(dismissal);
+        }
+
+        String idempotencyKey = "outbox-" + installId + "-" + items.get(0).id + "-"
+            + items.get(items.size() - 1).id + "-" + items.size();
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+        sdf.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        return enqueue(apiService.pushSync(token, idempotencyKey,
+                new SyncPushRequest(pushItems, installId, sdf.format(new Date()))))
+            .handleAsync((response, error) -> {
+                if (error != null) {
+                    Log.e(TAG, "Error syncing dismissals", error);
+                    for (SyncQueueEntity item : items) {
+                        onOutboxFailure(item, false);
+                    }
+                    return null;
+                }
+                if (response.isSuccessful() && response.body() != null) {
+                    for (SyncQueueEntity item : items) {
+                        done.add(item.id);
                     }
-                } catch (IOException e) {
-                    Log.e(TAG, "Error syncing VIP: " + vip.displayName, e);
+                    return null;
+                }
+                boolean permanent = isPermanentFailure(response.code());
+                for (SyncQueueEntity item : items) {
+                    onOutboxFailure(item, permanent);
                 }
+                return null;
+            }, executorService);
+    }
+
+    /**
+     * Issue a call on OkHttp's dispatcher and complete the future with its response
+     * Retrofit delivers the callback on the main thread, so continuations must hop
+     * back onto the sync executor before touching the database
+     */
+    private static <T> CompletableFuture<Response<T>> enqueue(Call<T> call) {
+        CompletableFuture<Response<T>> future = new CompletableFuture<>();
+        call.enqueue(new Callback<T>() {
+            @Override
+            public void onResponse(Call<T> call, Response<T> response) {
+                future.complete(response);
+            }
+
+            @Override
+            public void onFailure(Call<T> call, Throwable t) {
+                future.completeExceptionally(t);
             }
-        } catch (Exception e) {
-            Log.e(TAG, "Error syncing VIPs", e);
+        });
+        return future;
+    }
+
+    /**
+     * Reschedule a failed outbox item with exponential backoff and jitter,
+     * or park it as FAILED once retries are exhausted
+     */
+    private void onOutboxFailure(SyncQueueEntity item, boolean permanent) {
+        int attempts = item.retryCount + 1;
+        if (permanent || attempts >= config.getRetryMaxAttempts()) {
+            database.syncQueueDao().updateStatus(item.id, "FAILED");
+            Log.w(TAG, "Giving up on " + item.entityType + " " + item.entityId + " after " + attempts + " attempts");
+            return;
         }
+
+        long baseMs = Math.max(1, config.getRetryBackoffSeconds()) * 1000L;
+        long delayMs = Math.min(MAX_BACKOFF_MS, baseMs << Math.min(attempts - 1, 16));
+        // Equal jitter: half fixed, half random, so retries from many items spread out
+        long jittered = delayMs / 2 + (long) (random.nextDouble() * (delayMs / 2));
+        database.syncQueueDao().scheduleRetry(item.id, attempts, System.currentTimeMillis() + jittered);
     }
 
-    private void syncNotifications(String token) {
-        try {
-            List<NotificationEntity> unsyncedNotifications = database.notificationDao().getUnsyncedNotifications();
+    private static boolean isPermanentFailure(int httpCode) {
+        return httpCode >= 400 && httpCode < 500 && httpCode != 408 && httpCode != 429;
+    }
 
-            if (unsyncedNotifications.isEmpty()) {
-                return;
+    /**
+     * Push unsynced notifications chunk by chunk, each chunk chained on the previous
+     * response; a rejected chunk or a network error fails the phase with an
+     * IOException so the caller retries with backoff
+     */
+    private CompletableFuture<Void> syncNotifications(String token, String installId) {
+        return syncNotificationChunk(token, installId, 0, 0)
+            .whenComplete((result, error) -> {
+                if (error != null) {
+                    Log.e(TAG, "Error syncing notifications", unwrap(error));
+                }
+            });
+    }
+
+    private CompletableFuture<Void> syncNotificationChunk(String token, String installId,
+                                                          long afterId, int total) {
+        // Keyset chunk of unsynced rows; acknowledged chunks drop out of the query,
+        // so an interrupted sync resumes after the last acknowledged chunk
+        List<NotificationEntity> chunk =
+            database.notificationDao().getUnsyncedAfter(afterId, config.getNotificationBatchSize());
+        if (chunk.isEmpty()) {
+            if (total > 0) {
+                Log.d(TAG, "Synced " + total + " notifications");
             }
+            return CompletableFuture.completedFuture(null);
+        }
 
-            // Build sync request
-            List<Map<String, Object>> items = new ArrayList<>();
-            for (NotificationEntity notif : unsyncedNotifications) {
-                Map<String, Object> item = new HashMap<>();
-                item.put("local_id", String.valueOf(notif.id));
-                item.put("type", "notification");
+        List<Long> ids = new ArrayList<>(chunk.size());
+        int repeats = 0;
+        for (NotificationEntity notif : chunk) {
+            ids.add(notif.id);
+            repeats += notif.repeatCount;
+        }
+        List<SyncItem> items = buildNotificationItems(chunk);
+
+        long firstId = ids.get(0);
+        long lastId = ids.get(ids.size() - 1);
+        // Repeats are part of the key: a row re-pushed after a repeat must not replay the old receipt
+        String idempotencyKey = "notif-" + installId + "-" + firstId + "-" + lastId + "-" + ids.size()
+            + "-" + repeats;
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+        sdf.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        SyncPushRequest request = new SyncPushRequest(items, installId, sdf.format(new Date()));
+        return enqueue(apiService.pushSync(token, idempotencyKey, request))
+            .thenComposeAsync(response -> {
+                if (!response.isSuccessful() || response.body() == null) {
+                    // Acknowledged chunks stay synced; the next run resumes at this one
+                    throw new CompletionException(
+                        new IOException("Notification chunk rejected (HTTP " + response.code() + ")"));
+                }
 
-                Map<String, Object> data = new HashMap<>();
-                data.put("app_package", notif.appPackage);
-                data.put("title", notif.title);
-                data.put("text", notif.text);
-                data.put("action", notif.action);
-                data.put("confidence", notif.confidence);
-                data.put("received_at", notif.receivedAt);
+                // Acknowledge in one transaction; a row that gained a repeat in the
+                // meantime (the listener writes from its own process) stays unsynced
+                database.runInTransaction(() -> {
+                    for (NotificationEntity notif : chunk) {
+                        database.notificationDao().markSyncedIfUnchanged(notif.id, notif.repeatCount);
+                    }
+                });
+                return syncNotificationChunk(token, installId, lastId, total + ids.size());
+            }, executorService);
+    }
 
-                item.put("data", data);
-                items.add(item);
-            }
+    /**
+     * Pull changes page by page from the saved cursor, each page requested once the
+     * previous one is applied; a failed page fails the phase with an IOException
+     */
+    private CompletableFuture<Void> pullChanges(String token, String cursor) {
+        return pullPage(token, cursor, 0, 0)
+            .whenComplete((result, error) -> {
+                if (error != null) {
+                    Log.e(TAG, "Error pulling changes", unwrap(error));
+                }
+            });
+    }
+
+    private CompletableFuture<Void> pullPage(String token, String cursor, int pages, int applied) {
+        return enqueue(apiService.pullSync(token, cursor, PULL_PAGE_SIZE))
+            .thenComposeAsync(response -> {
+                if (!response.isSuccessful() || response.body() == null) {
+                    // Applied pages advanced the saved cursor; the next run resumes from there
+                    throw new CompletionException(new IOException("Pull failed (HTTP " + response.code() + ")"));
+                }
 
-            SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
-            String timestamp = sdf.format(new Date());
+                SyncPullResponse page = response.body();
+                List<Map<String, Object>> items =
+                    page.items != null ? page.items : Collections.<Map<String, Object>>emptyList();
+                String nextCursor = page.next_cursor;
 
-            SyncPushRequest request = new SyncPushRequest(items, timestamp);
-            Response<SyncResponse> response = apiService.pushSync(token, request).execute();
+                // Apply the page and advance the cursor atomically
+                database.runInTransaction(() -> {
+                    for (Map<String, Object> item : items) {
+                        applyPulledChange(item);
+                    }
+                    if (nextCursor != null) {
+                        database.userDao().updatePullCursor(nextCursor);
+                    }
+                });
 
-            if (response.isSuccessful() && response.body() != null) {
-                // Mark notifications as synced
-                for (NotificationEntity notif : unsyncedNotifications) {
-                    database.notificationDao().markAsSynced(notif.id);
+                int total = applied + items.size();
+                if (!page.has_more || nextCursor == null || nextCursor.equals(cursor)) {
+                    if (total > 0) {
+                        Log.d(TAG, "Pulled " + total + " changes in " + (pages + 1) + " pages");
+                    }
+                    return CompletableFuture.<Void>completedFuture(null);
                 }
-                Log.d(TAG, "Synced " + response.body().synced_count + " notifications");
+                return pullPage(token, nextCursor, pages + 1, total);
+            }, executorService);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void applyPulledChange(Map<String, Object> item) {
+        String entityType = (String) item.get("entity_type");
+        String op = (String) item.get("op");
+        long serverId = asLong(item.get("entity_id"));
+        Map<String, Object> data = (Map<String, Object>) item.get("data");
+
+        if ("profile".equals(entityType)) {
+            if ("delete".equals(op)) {
+                database.profileDao().deleteByServerId(serverId);
+            } else if (data != null) {
+                mergeProfile(serverId, data);
+            }
+        } else if ("vip".equals(entityType)) {
+            if ("delete".equals(op)) {
+                database.vipDao().deleteByServerId(serverId);
+            } else if (data != null) {
+                mergeVIP(serverId, data);
             }
-        } catch (Exception e) {
-            Log.e(TAG, "Error syncing notifications", e);
         }
     }
 
+    private void mergeProfile(long serverId, Map<String, Object> data) {
+        long remoteUpdatedAt = asLong(data.get("updated_at"));
+        ProfileEntity profile = database.profileDao().getProfileByServerId(serverId);
+        boolean linked = false;
+        if (profile == null) {
+            // A local profile that never reached the server, such as the Default created on
+            // first run, is the one registration created there: link it instead of adding a copy
+            profile = database.profileDao().getUnlinkedProfileByName((String) data.get("name"));
+            if (profile != null) {
+                profile.serverId = serverId;
+                linked = true;
+            }
+        }
+        boolean isNew = profile == null;
+
+        // Last writer wins: keep an unsynced local edit that is newer than the remote one
+        if (!isNew && !profile.synced && profile.updatedAt > remoteUpdatedAt) {
+            if (linked) {
+                database.profileDao().update(profile);
+                // Its queued push may have been refused as a new profile; send it as an update
+                SyncOutbox.getInstance(context).queueProfileUpdate(profile.id);
+            }
+            return;
+        }
+        if (isNew) {
+            profile = new ProfileEntity();
+            profile.serverId = serverId;
+        }
+
+        profile.name = (String) data.get("name");
+        profile.quietHoursStart = (String) data.get("quiet_hours_start");
+        profile.quietHoursEnd = (String) data.get("quiet_hours_end");
+        profile.rulesJson = data.get("rules_json") != null ? (String) data.get("rules_json") : "{}";
+        profile.updatedAt = remoteUpdatedAt;
+        profile.synced = true;
+
+        // Activation stays a local choice, pulled profiles never change the active one
+        if (isNew) {
+            profile.isActive = false;
+            database.profileDao().insert(profile);
+        } else {
+            database.profileDao().update(profile);
+        }
+    }
+
+    private void mergeVIP(long serverId, Map<String, Object> data) {
+        long remoteUpdatedAt = asLong(data.get("updated_at"));
+        VIPEntity vip = database.vipDao().getVIPByServerId(serverId);
+        boolean isNew = vip == null;
+
+        if (!isNew && !vip.synced && vip.updatedAt > remoteUpdatedAt) {
+            return;
+        }
+        if (isNew) {
+            vip = new VIPEntity();
+            vip.serverId = serverId;
+        }
+
+        vip.appPackage = (String) data.get("app_package");
+        vip.identifier = (String) data.get("identifier");
+        if (vip.displayName == null) {
+            vip.displayName = vip.identifier;
+        }
+        vip.priority = (int) asLong(data.get("priority"));
+        vip.bypassQuietHours = Boolean.TRUE.equals(data.get("bypass_quiet_hours"));
+        vip.updatedAt = remoteUpdatedAt;
+        vip.synced = true;
+
+        if (isNew) {
+            database.vipDao().insert(vip);
+        } else {
+            database.vipDao().update(vip);
+        }
+    }
+
+    private static long asLong(Object value) {
+        // Gson decodes untyped JSON numbers as Double
+        return value instanceof Number ? ((Number) value).longValue() : 0L;
+    }
+
     /**
      * Check backend server health
      */
     public void checkServerHealth(HealthCheckCallback callback) {
-        executorService.execute(() -> {
+        // A blocking call, kept off the NETWORK pool so it never delays sync continuations
+        AppExecutors.getInstance().execute(AppExecutors.Pool.BACKGROUND, AppExecutors.Priority.NORMAL, () -> {
             try {
                 Response<HealthResponse> response = apiService.healthCheck().execute();
                 if (response.isSuccessful() && response.body() != null) {
@@ -223,9 +821,43 @@ public class SyncManager {
     }
 
     private boolean isNetworkAvailable() {
-        // In a real app, check actual network connectivity
-        // For now, always return true and let API calls handle failures
-        return config.isOfflineModeEnabled();
+        return networkMonitor.isConnected();
+    }
+
+    /**
+     * Bulk notification uploads wait for an unmetered network when configured to
+     */
+    private boolean shouldDeferBulkUpload() {
+        return config.isBulkSyncDeferredOnMetered() && networkMonitor.isMetered();
+    }
+
+    /**
+     * Queue a background sync when the network returns or becomes unmetered
+     * and there is work the last runs could not push
+     */
+    private void onNetworkChanged(boolean connected, boolean metered) {
+        if (!connected) {
+            return;
+        }
+        // Database checks only; sync itself runs in SyncWorker
+        AppExecutors.getInstance().execute(AppExecutors.Pool.IO, AppExecutors.Priority.LOW, () -> {
+            boolean outboxPending = database.syncQueueDao().getPendingCount() > 0;
+            boolean bulkPending = !shouldDeferBulkUpload()
+                && database.notificationDao().getUnsyncedCount() > 0;
+            if (outboxPending || bulkPending) {
+                Log.d(TAG, "Network back with pending changes, resuming sync");
+                SyncWorker.resumeSync(context);
+            }
+        });
+    }
+
+    /**
+     * Sync skipped because there is no signed-in user; retrying will not help
+     */
+    public static class NotLoggedInException extends IOException {
+        public NotLoggedInException() {
+            super("Not logged in");
+        }
     }
 
     /**
@@ -0,0 +1,133 @@
+package com.quietinbox.services;
+
+import android.content.Context;
+
+import com.quietinbox.database.AppDatabase;
+import com.quietinbox.database.ProfileEntity;
+import com.quietinbox.database.SyncQueueEntity;
+import com.quietinbox.database.VIPEntity;
+
+/**
+ * Local mutations that must reach the server
+ * Each change is written together with its sync_queue entry in one transaction,
+ * and repeated edits to the same entity collapse into a single pending operation
+ */
+public class SyncOutbox {
+    public static final String TYPE_PROFILE = "profile";
+    public static final String TYPE_VIP = "vip";
+    public static final String TYPE_DISMISSAL = "dismissal";
+
+    public static final String OP_CREATE = "CREATE";
+    public static final String OP_UPDATE = "UPDATE";
+    public static final String OP_DELETE = "DELETE";
+
+    private static SyncOutbox instance;
+
+    private final AppDatabase database;
+
+    private SyncOutbox(Context context) {
+        this.database = AppDatabase.getInstance(context);
+    }
+
+    public static synchronized SyncOutbox getInstance(Context context) {
+        if (instance == null) {
+            instance = new SyncOutbox(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Insert or update a profile and queue it for sync
+     * Must be called off the main thread
+     */
+    public long saveProfile(ProfileEntity profile) {
+        return database.runInTransaction(() -> {
+            profile.updatedAt = System.currentTimeMillis();
+            profile.synced = false;
+            if (profile.id == 0) {
+                profile.id = database.profileDao().insert(profile);
+            } else {
+                database.profileDao().update(profile);
+            }
+            enqueue(TYPE_PROFILE, profile.id, profile.serverId == null ? OP_CREATE : OP_UPDATE, null);
+            return profile.id;
+        });
+    }
+
+    /**
+     * Queue a push of a profile's current row, e.g. a local edit kept when linking
+     * the profile to its server copy
+     */
+    void queueProfileUpdate(long profileId) {
+        enqueue(TYPE_PROFILE, profileId, OP_UPDATE, null);
+    }
+
+    /**
+     * Insert or update a VIP and queue it for sync
+     */
+    public long saveVIP(VIPEntity vip) {
+        return database.runInTransaction(() -> {
+            vip.updatedAt = System.currentTimeMillis();
+            vip.synced = false;
+            if (vip.id == 0) {
+                vip.id = database.vipDao().insert(vip);
+            } else {
+                database.vipDao().update(vip);
+            }
+            enqueue(TYPE_VIP, vip.id, vip.serverId == null ? OP_CREATE : OP_UPDATE, null);
+            return vip.id;
+        });
+    }
+
+    /**
+     * Delete a VIP locally and queue the server-side delete
+     */
+    public void deleteVIP(VIPEntity vip) {
+        database.runInTransaction(() -> {
+            database.vipDao().delete(vip);
+            enqueue(TYPE_VIP, vip.id, OP_DELETE,
+                vip.serverId != null ? String.valueOf(vip.serverId) : null);
+        });
+    }
+
+    /**
+     * Dismiss a notification and queue the dismissal for sync
+     */
+    public void dismissNotification(long notificationId) {
+        database.runInTransaction(() -> {
+            database.notificationDao().markAsDismissed(notificationId);
+            enqueue(TYPE_DISMISSAL, notificationId, OP_UPDATE, null);
+        });
+    }
+
+    private void enqueue(String entityType, long entityId, String operation, String dataJson) {
+        if (TYPE_PROFILE.equals(entityType) && OP_DELETE.equals(operation)) {
+            // The API has no profile delete, so the drain could never send it
+            throw new IllegalArgumentException("Profile deletes cannot be synced");
+        }
+
+        SyncQueueEntity pending = database.syncQueueDao().findPending(entityType, entityId);
+        if (pending == null) {
+            SyncQueueEntity item = new SyncQueueEntity();
+            item.entityType = entityType;
+            item.entityId = entityId;
+            item.operation = operation;
+            item.dataJson = dataJson;
+            database.syncQueueDao().insert(item);
+            return;
+        }
+
+        // Collapse onto the pending operation so only the latest state is pushed
+        if (OP_DELETE.equals(operation)) {
+            if (OP_CREATE.equals(pending.operation)) {
+                // Never reached the server, nothing to push
+                database.syncQueueDao().delete(pending.id);
+                return;
+            }
+            pending.operation = OP_DELETE;
+            pending.dataJson = dataJson;
+        }
+        // CREATE followed by UPDATE stays a CREATE; the drain reads the current row
+        database.syncQueueDao().update(pending);
+    }
+}
@@ -0,0 +1,201 @@
+package com.quietinbox.services;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.core.app.NotificationCompat;
+import androidx.lifecycle.LiveData;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.ForegroundInfo;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.OutOfQuotaPolicy;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.quietinbox.R;
+import com.quietinbox.utils.ConfigLoader;
+import com.quietinbox.utils.NetworkMonitor;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background sync driven by WorkManager
+ * A unique periodic job runs every backend.sync.interval.minutes, shortened while a
+ * backlog is pending and stretched while idle. User refreshes enqueue a unique expedited
+ * one-time job, so repeated taps or overlapping triggers collapse into one run.
+ */
+public class SyncWorker extends Worker {
+    private static final String TAG = "SyncWorker";
+    private static final String PERIODIC_WORK_NAME = "sync_periodic";
+    private static final String REFRESH_WORK_NAME = "sync_refresh";
+    private static final String KEY_INTERVAL_MINUTES = "interval_minutes";
+
+    private static final String CHANNEL_ID = "sync";
+    private static final int FOREGROUND_NOTIFICATION_ID = 1001;
+
+    // WorkManager's lower bound for periodic work
+    private static final long MIN_INTERVAL_MINUTES = 15;
+    private static final long MAX_INTERVAL_MINUTES = 24 * 60;
+    // Pending changes above this count shorten the interval
+    private static final int BACKLOG_THRESHOLD = 50;
+
+    public SyncWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Schedule periodic sync at the configured interval, keeping an existing schedule
+     */
+    public static void schedule(Context context) {
+        long interval = ConfigLoader.getInstance(context).getSyncIntervalMinutes();
+        enqueuePeriodic(context, clampInterval(interval), ExistingPeriodicWorkPolicy.KEEP);
+    }
+
+    /**
+     * Run a sync as soon as possible for a user-initiated refresh
+     * A refresh already queued or running absorbs this request. While offline nothing
+     * is enqueued and false is returned, since the run would only wait on its network
+     * constraint; pending changes resume on their own once the network returns.
+     */
+    public static boolean requestSync(Context context) {
+        if (!NetworkMonitor.getInstance(context).isConnected()) {
+            return false;
+        }
+        enqueueOneTime(context, true);
+        return true;
+    }
+
+    /**
+     * Run a sync soon without spending expedited quota, e.g. after connectivity returns
+     */
+    public static void resumeSync(Context context) {
+        enqueueOneTime(context, false);
+    }
+
+    private static void enqueueOneTime(Context context, boolean expedited) {
+        Constraints constraints = new Constraints.Builder()
+            .setRequiredNetworkType(NetworkType.CONNECTED)
+            .build();
+
+        OneTimeWorkRequest.Builder builder = new OneTimeWorkRequest.Builder(SyncWorker.class)
+            .setConstraints(constraints);
+        if (expedited) {
+            builder.setExpedited(OutOfQuotaPolicy.RUN_AS_NON_EXPEDITED_WORK_REQUEST);
+        }
+
+        WorkManager.getInstance(context).enqueueUniqueWork(
+            REFRESH_WORK_NAME, ExistingWorkPolicy.KEEP, builder.build());
+    }
+
+    /**
+     * Observe the state of the user-initiated refresh
+     */
+    public static LiveData<List<WorkInfo>> getRefreshWorkInfo(Context context) {
+        return WorkManager.getInstance(context).getWorkInfosForUniqueWorkLiveData(REFRESH_WORK_NAME);
+    }
+
+    private static void enqueuePeriodic(Context context, long intervalMinutes,
+                                        ExistingPeriodicWorkPolicy policy) {
+        Constraints constraints = new Constraints.Builder()
+            .setRequiredNetworkType(NetworkType.CONNECTED)
+            .setRequiresBatteryNotLow(true)
+            .build();
+
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(
+                SyncWorker.class, intervalMinutes, TimeUnit.MINUTES)
+            .setConstraints(constraints)
+            .setInputData(new Data.Builder()
+                .putLong(KEY_INTERVAL_MINUTES, intervalMinutes)
+                .build())
+            .build();
+
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(
+            PERIODIC_WORK_NAME, policy, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        SyncManager syncManager = SyncManager.getInstance(getApplicationContext());
+        try {
+            syncManager.syncNow();
+        } catch (SyncManager.NotLoggedInException e) {
+            Log.d(TAG, "Not logged in, nothing to sync");
+            return Result.success();
+        } catch (Exception e) {
+            Log.e(TAG, "Background sync failed", e);
+            int maxAttempts = ConfigLoader.getInstance(getApplicationContext()).getRetryMaxAttempts();
+            // Give up after the configured attempts; the next periodic run picks the work up again
+            return getRunAttemptCount() + 1 < maxAttempts ? Result.retry() : Result.failure();
+        }
+
+        adaptInterval(syncManager.getPendingCount());
+        return Result.success();
+    }
+
+    /**
+     * Re-enqueue the periodic job when the backlog calls for a different interval
+     * Only the periodic job carries an interval, so one-time refreshes never reschedule it
+     */
+    private void adaptInterval(int pending) {
+        long current = getInputData().getLong(KEY_INTERVAL_MINUTES, 0);
+        if (current == 0) {
+            return;
+        }
+
+        long base = ConfigLoader.getInstance(getApplicationContext()).getSyncIntervalMinutes();
+        long target;
+        if (pending > BACKLOG_THRESHOLD) {
+            target = base / 4;
+        } else if (pending == 0) {
+            target = base * 2;
+        } else {
+            target = base;
+        }
+        target = clampInterval(target);
+
+        if (target != current) {
+            Log.d(TAG, pending + " changes pending, sync interval " + current + " -> " + target + " min");
+            enqueuePeriodic(getApplicationContext(), target, ExistingPeriodicWorkPolicy.UPDATE);
+        }
+    }
+
+    private static long clampInterval(long minutes) {
+        return Math.max(MIN_INTERVAL_MINUTES, Math.min(MAX_INTERVAL_MINUTES, minutes));
+    }
+
+    /**
+     * Needed for expedited work on Android 11 and below, where it runs as a foreground service
+     */
+    @NonNull
+    @Override
+    public ForegroundInfo getForegroundInfo() {
+        Context context = getApplicationContext();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(CHANNEL_ID,
+                context.getString(R.string.sync_channel_name), NotificationManager.IMPORTANCE_MIN);
+            context.getSystemService(NotificationManager.class).createNotificationChannel(channel);
+        }
+
+        Notification notification = new NotificationCompat.Builder(context, CHANNEL_ID)
+            .setSmallIcon(R.drawable.ic_launcher)
+            .setContentTitle(context.getString(R.string.sync_in_progress))
+            .setPriority(NotificationCompat.PRIORITY_MIN)
+            .setOngoing(true)
+            .build();
+        return new ForegroundInfo(FOREGROUND_NOTIFICATION_ID, notification);
+    }
+}
@@ -0,0 +1,181 @@
+package com.quietinbox.ui;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.core.util.ObjectsCompat;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.quietinbox.R;
+import com.quietinbox.database.NotificationEntity;
+import com.quietinbox.database.NotificationGroup;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Adapter for the grouped LATER digest: a header per app or sender, followed by
+ * that section's notifications while it is expanded
+ */
+public class DigestAdapter extends ListAdapter<DigestAdapter.Row, RecyclerView.ViewHolder> {
+
+    private static final int TYPE_HEADER = 0;
+    private static final int TYPE_ITEM = 1;
+
+    private static final DiffUtil.ItemCallback<Row> DIFF_CALLBACK = new DiffUtil.ItemCallback<Row>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Row oldRow, @NonNull Row newRow) {
+            if (oldRow.group != null && newRow.group != null) {
+                return oldRow.group.getKey().equals(newRow.group.getKey());
+            }
+            if (oldRow.notification != null && newRow.notification != null) {
+                return oldRow.notification.id == newRow.notification.id;
+            }
+            return false;
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Row oldRow, @NonNull Row newRow) {
+            if (oldRow.group != null) {
+                return oldRow.expanded == newRow.expanded
+                    && oldRow.group.count == newRow.group.count
+                    && oldRow.group.latestAt == newRow.group.latestAt
+                    && ObjectsCompat.equals(oldRow.group.appName, newRow.group.appName)
+                    && ObjectsCompat.equals(oldRow.group.topTitle, newRow.group.topTitle)
+                    && ObjectsCompat.equals(oldRow.group.topText, newRow.group.topText);
+            }
+            return NotificationAdapter.DIFF_CALLBACK.areContentsTheSame(oldRow.notification, newRow.notification);
+        }
+    };
+
+    /**
+     * A section header or one notification inside an expanded section
+     */
+    public static final class Row {
+        final NotificationGroup group;
+        final NotificationEntity notification;
+        final boolean expanded;
+
+        private Row(NotificationGroup group, NotificationEntity notification, boolean expanded) {
+            this.group = group;
+            this.notification = notification;
+            this.expanded = expanded;
+        }
+
+        static Row header(NotificationGroup group, boolean expanded) {
+            return new Row(group, null, expanded);
+        }
+
+        static Row item(NotificationEntity notification) {
+            return new Row(null, notification, false);
+        }
+    }
+
+    public interface OnSectionClickListener {
+        void onSectionClick(NotificationGroup group);
+    }
+
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("MMM dd, HH:mm", Locale.getDefault());
+    private final Date date = new Date();
+    private final OnSectionClickListener sectionListener;
+    private final NotificationAdapter.OnItemClickListener itemListener;
+
+    public DigestAdapter(OnSectionClickListener sectionListener,
+                         NotificationAdapter.OnItemClickListener itemListener) {
+        super(DIFF_CALLBACK);
+        this.sectionListener = sectionListener;
+        this.itemListener = itemListener;
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        return getItem(position).group != null ? TYPE_HEADER : TYPE_ITEM;
+    }
+
+    @NonNull
+    @Override
+    public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        LayoutInflater inflater = LayoutInflater.from(parent.getContext());
+        RecyclerView.ViewHolder holder;
+        if (viewType == TYPE_HEADER) {
+            holder = new HeaderViewHolder(inflater.inflate(R.layout.item_digest_header, parent, false));
+        } else {
+            holder = new NotificationAdapter.ViewHolder(inflater.inflate(R.layout.item_notification, parent, false));
+        }
+        holder.itemView.setOnClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (position == RecyclerView.NO_POSITION) {
+                return;
+            }
+            Row row = getItem(position);
+            if (row.group != null && sectionListener != null) {
+                sectionListener.onSectionClick(row.group);
+            } else if (row.notification != null && itemListener != null) {
+                itemListener.onItemClick(row.notification);
+            }
+        });
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
+        Row row = getItem(position);
+        if (holder instanceof HeaderViewHolder) {
+            bindHeader((HeaderViewHolder) holder, row);
+        } else {
+            bindItem((NotificationAdapter.ViewHolder) holder, row.notification);
+        }
+    }
+
+    private void bindHeader(HeaderViewHolder holder, Row row) {
+        NotificationGroup group = row.group;
+        String appName = group.appName != null ? group.appName : group.appPackage;
+        if (group.bySender && !group.sender.isEmpty()) {
+            holder.groupNameText.setText(holder.itemView.getContext()
+                .getString(R.string.digest_sender_format, appName, group.sender));
+            holder.topTitleText.setText(group.topText);
+        } else {
+            holder.groupNameText.setText(appName);
+            holder.topTitleText.setText(group.topTitle);
+        }
+        holder.countText.setText(String.valueOf(group.count));
+        holder.latestTimeText.setText(formatTime(group.latestAt));
+        holder.expandIndicator.setText(row.expanded ? "▾" : "▸");
+    }
+
+    private void bindItem(NotificationAdapter.ViewHolder holder, NotificationEntity notification) {
+        holder.appNameText.setText(notification.appName);
+        holder.titleText.setText(notification.title);
+        holder.messageText.setText(notification.text);
+        holder.timeText.setText(formatTime(notification.receivedAt));
+        holder.vipIndicator.setVisibility(notification.isVip ? View.VISIBLE : View.GONE);
+    }
+
+    private String formatTime(long timestamp) {
+        date.setTime(timestamp);
+        return timeFormat.format(date);
+    }
+
+    static class HeaderViewHolder extends RecyclerView.ViewHolder {
+        TextView expandIndicator;
+        TextView groupNameText;
+        TextView countText;
+        TextView latestTimeText;
+        TextView topTitleText;
+
+        HeaderViewHolder(View itemView) {
+            super(itemView);
+            expandIndicator = itemView.findViewById(R.id.expandIndicator);
+            groupNameText = itemView.findViewById(R.id.groupNameText);
+            countText = itemView.findViewById(R.id.countText);
+            latestTimeText = itemView.findViewById(R.id.latestTimeText);
+            topTitleText = itemView.findViewById(R.id.topTitleText);
+        }
+    }
+}
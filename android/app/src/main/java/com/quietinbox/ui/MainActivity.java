@@ -1,9 +1,6 @@
 package com.quietinbox.ui;
 
-import android.content.BroadcastReceiver;
-import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.os.Bundle;
 import android.provider.Settings;
 import android.util.Log;
@@ -15,25 +12,33 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.SearchView;
 import androidx.appcompat.widget.Toolbar;
-import androidx.lifecycle.LiveData;
+import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.DefaultItemAnimator;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
+import androidx.work.WorkInfo;
 
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.android.material.tabs.TabLayout;
 import com.quietinbox.R;
-import com.quietinbox.database.AppDatabase;
 import com.quietinbox.database.NotificationEntity;
+import com.quietinbox.database.NotificationSearchResult;
 import com.quietinbox.services.NotificationClassifier;
-import com.quietinbox.services.SyncManager;
+import com.quietinbox.services.NotificationSearch;
+import com.quietinbox.services.SyncWorker;
+import com.quietinbox.services.SyncOutbox;
 import com.quietinbox.utils.AdManager;
+import com.quietinbox.utils.AppExecutors;
+import com.quietinbox.utils.AppStartup;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * Main activity showing notification feed with NOW/LATER tabs
@@ -41,26 +46,32 @@ import java.util.concurrent.Executors;
 public class MainActivity extends AppCompatActivity {
     private static final String TAG = "MainActivity";
     private static final String NOTIFICATION_LISTENER_SETTINGS = "android.settings.ACTION_NOTIFICATION_LISTENER_SETTINGS";
+    private static final int SEARCH_PAGE_SIZE = 50;
 
     private RecyclerView recyclerView;
     private SwipeRefreshLayout swipeRefresh;
     private NotificationAdapter adapter;
+    private DigestAdapter digestAdapter;
     private TabLayout tabLayout;
     private FrameLayout adContainer;
 
-    private AppDatabase database;
     private AdManager adManager;
-    private SyncManager syncManager;
+    private NotificationSearch notificationSearch;
     private ExecutorService executorService;
 
-    private String currentFilter = NotificationClassifier.ACTION_NOW;
+    private MainViewModel viewModel;
 
-    private BroadcastReceiver notificationReceiver = new BroadcastReceiver() {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            loadNotifications();
-        }
-    };
+    // Set between a user refresh and the end of the sync run it started or joined
+    private boolean refreshPending;
+    private boolean refreshRunning;
+
+    // Search feed mode: non-null while the search view is expanded with a query
+    private String searchQuery;
+    private int searchPage;
+    private boolean searchExhausted;
+    private final List<NotificationEntity> searchResults = new ArrayList<>();
+    private final Map<Long, CharSequence> searchHighlights = new HashMap<>();
+    private final Map<Long, CharSequence> searchTitleHighlights = new HashMap<>();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -68,11 +79,14 @@ public class MainActivity extends AppCompatActivity {
         setContentView(R.layout.activity_main);
 
         try {
+            viewModel = new ViewModelProvider(this).get(MainViewModel.class);
             initializeViews();
             initializeServices();
             checkNotificationAccess();
-            loadNotifications();
-            loadBannerAd();
+            observeFeed();
+            observeLaneCounts();
+            observeRefresh();
+            startUiComponents();
 
             // Track screen view for ad display
             adManager.trackScreenView();
@@ -89,23 +103,39 @@ public class MainActivity extends AppCompatActivity {
 
         recyclerView = findViewById(R.id.recyclerView);
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
-
-        adapter = new NotificationAdapter(new ArrayList<>(), this::onNotificationClick);
-        recyclerView.setAdapter(adapter);
+        recyclerView.setHasFixedSize(true);
+        // Animate inserts and removals; skip the cross-fade on in-place content changes
+        DefaultItemAnimator itemAnimator = new DefaultItemAnimator();
+        itemAnimator.setSupportsChangeAnimations(false);
+        recyclerView.setItemAnimator(itemAnimator);
+
+        adapter = new NotificationAdapter(this::onNotificationClick);
+        digestAdapter = new DigestAdapter(viewModel::toggleSection, this::onNotificationClick);
+        recyclerView.setAdapter(viewModel.isDigestLane() ? digestAdapter : adapter);
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView view, int dx, int dy) {
+                if (searchQuery != null && !searchExhausted && dy > 0 && !view.canScrollVertically(1)) {
+                    loadSearchPage(searchQuery, searchPage + 1);
+                }
+            }
+        });
 
         swipeRefresh = findViewById(R.id.swipeRefresh);
         swipeRefresh.setOnRefreshListener(this::refreshData);
 
         tabLayout = findViewById(R.id.tabLayout);
         tabLayout.addTab(tabLayout.newTab().setText("Now"));
-        tabLayout.addTab(tabLayout.newTab().setText("Later"));
+        tabLayout.addTab(tabLayout.newTab().setText("Later"),
+            NotificationClassifier.ACTION_LATER.equals(viewModel.getLane()));
         tabLayout.addOnTabSelectedListener(new TabLayout.OnTabSelectedListener() {
             @Override
             public void onTabSelected(TabLayout.Tab tab) {
-                currentFilter = tab.getPosition() == 0 ?
+                viewModel.setLane(tab.getPosition() == 0 ?
                     NotificationClassifier.ACTION_NOW :
-                    NotificationClassifier.ACTION_LATER;
-                loadNotifications();
+                    NotificationClassifier.ACTION_LATER);
+                showLane();
+                invalidateOptionsMenu();
             }
 
             @Override
@@ -122,10 +152,9 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void initializeServices() {
-        database = AppDatabase.getInstance(this);
         adManager = AdManager.getInstance(this);
-        syncManager = SyncManager.getInstance(this);
-        executorService = Executors.newSingleThreadExecutor();
+        notificationSearch = new NotificationSearch(this);
+        executorService = AppExecutors.getInstance().get(AppExecutors.Pool.IO);
     }
 
     private void checkNotificationAccess() {
@@ -147,40 +176,163 @@ public class MainActivity extends AppCompatActivity {
         return flat != null && flat.contains(packageName);
     }
 
-    private void loadNotifications() {
-        LiveData<List<NotificationEntity>> liveData =
-            database.notificationDao().getNotificationsByAction(currentFilter);
-
-        liveData.observe(this, notifications -> {
-            if (notifications != null) {
+    private void observeFeed() {
+        // Observed once; tab switches swap the lane behind the feed in the ViewModel
+        viewModel.getFeed().observe(this, notifications -> {
+            if (notifications != null && searchQuery == null) {
                 adapter.updateData(notifications);
                 swipeRefresh.setRefreshing(false);
             }
         });
+        viewModel.getDigest().observe(this, rows -> {
+            if (rows != null) {
+                digestAdapter.submitList(rows);
+                swipeRefresh.setRefreshing(false);
+            }
+        });
+    }
+
+    /**
+     * Show the selected lane: the grouped digest for LATER, the flat feed otherwise
+     */
+    private void showLane() {
+        if (searchQuery != null) {
+            return;
+        }
+        RecyclerView.Adapter<?> laneAdapter = viewModel.isDigestLane() ? digestAdapter : adapter;
+        if (recyclerView.getAdapter() != laneAdapter) {
+            recyclerView.setAdapter(laneAdapter);
+        }
+    }
+
+    private void observeLaneCounts() {
+        viewModel.getLaneCount(NotificationClassifier.ACTION_NOW).observe(this, count ->
+            updateTabTitle(0, "Now", count));
+        viewModel.getLaneCount(NotificationClassifier.ACTION_LATER).observe(this, count ->
+            updateTabTitle(1, "Later", count));
+    }
+
+    private void updateTabTitle(int position, String label, Integer count) {
+        TabLayout.Tab tab = tabLayout.getTabAt(position);
+        if (tab != null) {
+            tab.setText(count != null && count > 0 ? label + " (" + count + ")" : label);
+        }
+    }
+
+    private void onSearchQueryChanged(String query) {
+        String trimmed = query != null ? query.trim() : "";
+        if (trimmed.isEmpty()) {
+            exitSearchMode();
+            return;
+        }
+
+        searchQuery = trimmed;
+        searchExhausted = false;
+        if (recyclerView.getAdapter() != adapter) {
+            recyclerView.setAdapter(adapter);
+        }
+        loadSearchPage(trimmed, 0);
+    }
+
+    private void loadSearchPage(String query, int page) {
+        executorService.execute(() -> {
+            List<NotificationSearchResult> results =
+                notificationSearch.search(query, page, SEARCH_PAGE_SIZE);
+
+            runOnUiThread(() -> {
+                // Drop results for a query the user has already moved past
+                if (!query.equals(searchQuery)) {
+                    return;
+                }
+                if (page == 0) {
+                    searchResults.clear();
+                    searchHighlights.clear();
+                    searchTitleHighlights.clear();
+                } else if (page != searchPage + 1) {
+                    return;
+                }
+
+                searchPage = page;
+                searchExhausted = results.size() < SEARCH_PAGE_SIZE;
+                for (NotificationSearchResult result : results) {
+                    searchResults.add(result.notification);
+                    CharSequence highlight = NotificationSearch.highlight(result.snippet);
+                    if (highlight != null) {
+                        searchHighlights.put(result.notification.id, highlight);
+                    }
+                    CharSequence titleHighlight = NotificationSearch.highlight(result.titleSnippet);
+                    if (titleHighlight != null) {
+                        searchTitleHighlights.put(result.notification.id, titleHighlight);
+                    }
+                }
+                adapter.updateData(new ArrayList<>(searchResults), new HashMap<>(searchHighlights),
+                    new HashMap<>(searchTitleHighlights));
+            });
+        });
+    }
+
+    private void exitSearchMode() {
+        if (searchQuery == null) {
+            return;
+        }
+        searchQuery = null;
+        searchResults.clear();
+        searchHighlights.clear();
+        searchTitleHighlights.clear();
+        List<NotificationEntity> notifications = viewModel.getFeed().getValue();
+        adapter.updateData(notifications != null && !viewModel.isDigestLane()
+            ? notifications : new ArrayList<>());
+        showLane();
     }
 
     private void refreshData() {
-        // Sync with server
-        syncManager.syncAll(new SyncManager.SyncCallback() {
-            @Override
-            public void onSuccess() {
-                runOnUiThread(() -> {
-                    Toast.makeText(MainActivity.this, "Sync completed", Toast.LENGTH_SHORT).show();
-                    swipeRefresh.setRefreshing(false);
-                });
-            }
+        // Sync with server; a refresh already queued or running absorbs this one
+        if (!SyncWorker.requestSync(this)) {
+            swipeRefresh.setRefreshing(false);
+            Toast.makeText(this, R.string.error_sync_offline, Toast.LENGTH_SHORT).show();
+            return;
+        }
+        refreshPending = true;
+    }
 
-            @Override
-            public void onError(String error) {
-                runOnUiThread(() -> {
-                    Toast.makeText(MainActivity.this, "Sync failed: " + error, Toast.LENGTH_SHORT).show();
-                    swipeRefresh.setRefreshing(false);
-                });
+    private void observeRefresh() {
+        SyncWorker.getRefreshWorkInfo(this).observe(this, infos -> {
+            if (!refreshPending || infos == null || infos.isEmpty()) {
+                return;
+            }
+            WorkInfo info = infos.get(0);
+            if (!info.getState().isFinished()) {
+                refreshRunning = true;
+                return;
             }
+            if (!refreshRunning) {
+                // Result of an earlier refresh, ours has not been enqueued yet
+                return;
+            }
+
+            refreshPending = false;
+            refreshRunning = false;
+            swipeRefresh.setRefreshing(false);
+            boolean succeeded = info.getState() == WorkInfo.State.SUCCEEDED;
+            Toast.makeText(this, succeeded ? R.string.sync_success : R.string.error_sync,
+                Toast.LENGTH_SHORT).show();
         });
     }
 
+    /**
+     * Ads and billing are only started once the UI is shown, off the main thread
+     */
+    private void startUiComponents() {
+        AppStartup startup = AppStartup.getInstance(this);
+        startup.ensure(AppStartup.Component.ADS).thenRun(() -> runOnUiThread(this::loadBannerAd));
+        // Restores Pro status from existing purchases
+        startup.ensure(AppStartup.Component.BILLING);
+    }
+
     private void loadBannerAd() {
+        if (isDestroyed()) {
+            return;
+        }
         try {
             adManager.loadBannerAd(this, adContainer);
         } catch (Exception e) {
@@ -200,7 +352,7 @@ public class MainActivity extends AppCompatActivity {
 
     private void dismissNotification(NotificationEntity notification) {
         executorService.execute(() -> {
-            database.notificationDao().markAsDismissed(notification.id);
+            SyncOutbox.getInstance(this).dismissNotification(notification.id);
             runOnUiThread(() -> Toast.makeText(this, "Dismissed", Toast.LENGTH_SHORT).show());
         });
     }
@@ -225,9 +377,46 @@ public class MainActivity extends AppCompatActivity {
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.menu_main, menu);
+
+        MenuItem searchItem = menu.findItem(R.id.action_search);
+        SearchView searchView = (SearchView) searchItem.getActionView();
+        searchView.setQueryHint(getString(R.string.search_hint));
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                onSearchQueryChanged(query);
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                onSearchQueryChanged(newText);
+                return true;
+            }
+        });
+        searchItem.setOnActionExpandListener(new MenuItem.OnActionExpandListener() {
+            @Override
+            public boolean onMenuItemActionExpand(MenuItem item) {
+                return true;
+            }
+
+            @Override
+            public boolean onMenuItemActionCollapse(MenuItem item) {
+                exitSearchMode();
+                return true;
+            }
+        });
         return true;
     }
 
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu) {
+        MenuItem groupItem = menu.findItem(R.id.action_group_by_sender);
+        groupItem.setVisible(viewModel.isDigestLane());
+        groupItem.setChecked(viewModel.isGroupBySender());
+        return super.onPrepareOptionsMenu(menu);
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         int id = item.getItemId();
@@ -241,6 +430,10 @@ public class MainActivity extends AppCompatActivity {
         } else if (id == R.id.action_settings) {
             startActivity(new Intent(this, SettingsActivity.class));
             return true;
+        } else if (id == R.id.action_group_by_sender) {
+            item.setChecked(!item.isChecked());
+            viewModel.setGroupBySender(item.isChecked());
+            return true;
         } else if (id == R.id.action_sync) {
             swipeRefresh.setRefreshing(true);
             refreshData();
@@ -253,27 +446,15 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onResume() {
         super.onResume();
-        registerReceiver(notificationReceiver, new IntentFilter("com.quietinbox.NOTIFICATION_UPDATE"));
 
         // Show interstitial ad with smart frequency
         adManager.showInterstitialAd(this);
     }
 
-    @Override
-    protected void onPause() {
-        super.onPause();
-        try {
-            unregisterReceiver(notificationReceiver);
-        } catch (Exception e) {
-            // Receiver not registered
-        }
-    }
-
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (executorService != null) {
-            executorService.shutdown();
-        }
+        executorService.execute(notificationSearch::close);
     }
+
 }
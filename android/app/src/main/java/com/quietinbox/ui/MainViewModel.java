@@ -0,0 +1,218 @@
+package com.quietinbox.ui;
+
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
+
+import com.quietinbox.database.AppDatabase;
+import com.quietinbox.database.NotificationEntity;
+import com.quietinbox.database.NotificationGroup;
+import com.quietinbox.services.NotificationClassifier;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Feed state for MainActivity, kept across tab switches and configuration changes
+ * Each lane's query LiveData is created once and cached; switching tabs only moves
+ * the feed onto another cached source, so Room re-queries just the lane on screen.
+ * The LATER lane is shown as a grouped digest instead: section headers come from a
+ * GROUP BY query and a section's notifications are only queried while it is expanded.
+ */
+public class MainViewModel extends AndroidViewModel {
+    private static final String DIGEST_LANE = NotificationClassifier.ACTION_LATER;
+
+    private final AppDatabase database;
+    private final Map<String, LiveData<List<NotificationEntity>>> lanes = new HashMap<>();
+    private final Map<String, LiveData<Integer>> laneCounts = new HashMap<>();
+    private final MediatorLiveData<List<NotificationEntity>> feed = new MediatorLiveData<>();
+
+    private String currentLane;
+    private LiveData<List<NotificationEntity>> currentSource;
+
+    // Digest state
+    private final MediatorLiveData<List<DigestAdapter.Row>> digest = new MediatorLiveData<>();
+    private final Map<String, LiveData<List<NotificationEntity>>> sectionSources = new LinkedHashMap<>();
+    private final Map<String, List<NotificationEntity>> sectionItems = new HashMap<>();
+    private LiveData<List<NotificationGroup>> groupSource;
+    private List<NotificationGroup> groups = Collections.emptyList();
+    private boolean groupBySender;
+    private boolean digestAttached;
+
+    public MainViewModel(@NonNull Application application) {
+        super(application);
+        database = AppDatabase.getInstance(application);
+        setLane(NotificationClassifier.ACTION_NOW);
+    }
+
+    /**
+     * Notifications of the selected lane, unless it is shown as a digest
+     */
+    public LiveData<List<NotificationEntity>> getFeed() {
+        return feed;
+    }
+
+    /**
+     * Section headers of the LATER lane, each followed by its rows when expanded
+     */
+    public LiveData<List<DigestAdapter.Row>> getDigest() {
+        return digest;
+    }
+
+    public String getLane() {
+        return currentLane;
+    }
+
+    public boolean isDigestLane() {
+        return DIGEST_LANE.equals(currentLane);
+    }
+
+    public void setLane(String action) {
+        if (action.equals(currentLane)) {
+            return;
+        }
+        if (currentSource != null) {
+            feed.removeSource(currentSource);
+            currentSource = null;
+        }
+        currentLane = action;
+
+        if (isDigestLane()) {
+            attachDigest();
+        } else {
+            detachDigest();
+            currentSource = getLaneSource(action);
+            feed.addSource(currentSource, feed::setValue);
+        }
+    }
+
+    public LiveData<Integer> getLaneCount(String action) {
+        return laneCounts.computeIfAbsent(action, a -> database.counterDao().getLaneCount(a));
+    }
+
+    public boolean isGroupBySender() {
+        return groupBySender;
+    }
+
+    /**
+     * Switch digest sections between per app and per sender; collapses all sections
+     */
+    public void setGroupBySender(boolean bySender) {
+        if (bySender == groupBySender) {
+            return;
+        }
+        boolean attached = digestAttached;
+        detachDigest();
+        sectionSources.clear();
+        sectionItems.clear();
+        groups = Collections.emptyList();
+        groupBySender = bySender;
+        if (attached) {
+            attachDigest();
+        }
+    }
+
+    public void toggleSection(NotificationGroup group) {
+        String key = group.getKey();
+        LiveData<List<NotificationEntity>> source = sectionSources.remove(key);
+        if (source != null) {
+            digest.removeSource(source);
+            sectionItems.remove(key);
+            rebuildDigest();
+            return;
+        }
+
+        source = group.bySender
+            ? database.notificationDao().getGroupNotifications(DIGEST_LANE, group.appPackage, group.sender)
+            : database.notificationDao().getGroupNotifications(DIGEST_LANE, group.appPackage);
+        sectionSources.put(key, source);
+        if (digestAttached) {
+            observeSection(key, source);
+        }
+        rebuildDigest();
+    }
+
+    private void attachDigest() {
+        if (digestAttached) {
+            return;
+        }
+        digestAttached = true;
+        groupSource = groupBySender
+            ? database.notificationDao().getSenderGroups(DIGEST_LANE)
+            : database.notificationDao().getAppGroups(DIGEST_LANE);
+        digest.addSource(groupSource, loaded -> {
+            groups = loaded != null ? loaded : Collections.emptyList();
+            dropVanishedSections();
+            rebuildDigest();
+        });
+        for (Map.Entry<String, LiveData<List<NotificationEntity>>> entry : sectionSources.entrySet()) {
+            observeSection(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void detachDigest() {
+        if (!digestAttached) {
+            return;
+        }
+        digestAttached = false;
+        digest.removeSource(groupSource);
+        groupSource = null;
+        for (LiveData<List<NotificationEntity>> source : sectionSources.values()) {
+            digest.removeSource(source);
+        }
+    }
+
+    private void observeSection(String key, LiveData<List<NotificationEntity>> source) {
+        digest.addSource(source, items -> {
+            if (sectionSources.containsKey(key)) {
+                sectionItems.put(key, items != null ? items : Collections.emptyList());
+                rebuildDigest();
+            }
+        });
+    }
+
+    private void dropVanishedSections() {
+        if (sectionSources.isEmpty()) {
+            return;
+        }
+        Set<String> keys = new HashSet<>();
+        for (NotificationGroup group : groups) {
+            keys.add(group.getKey());
+        }
+        for (String key : new ArrayList<>(sectionSources.keySet())) {
+            if (!keys.contains(key)) {
+                digest.removeSource(sectionSources.remove(key));
+                sectionItems.remove(key);
+            }
+        }
+    }
+
+    private void rebuildDigest() {
+        List<DigestAdapter.Row> rows = new ArrayList<>(groups.size());
+        for (NotificationGroup group : groups) {
+            String key = group.getKey();
+            boolean expanded = sectionSources.containsKey(key);
+            rows.add(DigestAdapter.Row.header(group, expanded));
+            List<NotificationEntity> items = sectionItems.get(key);
+            if (expanded && items != null) {
+                for (NotificationEntity notification : items) {
+                    rows.add(DigestAdapter.Row.item(notification));
+                }
+            }
+        }
+        digest.setValue(rows);
+    }
+
+    private LiveData<List<NotificationEntity>> getLaneSource(String action) {
+        return lanes.computeIfAbsent(action, a -> database.notificationDao().getNotificationsByAction(a));
+    }
+}
@@ -1,36 +1,71 @@
 package com.quietinbox.ui;
 
+import android.util.LongSparseArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.core.util.ObjectsCompat;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.quietinbox.R;
 import com.quietinbox.database.NotificationEntity;
 
 import java.text.SimpleDateFormat;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 /**
  * Adapter for displaying notifications in RecyclerView
+ * Diffs run on a background thread via ListAdapter, so an update only rebinds
+ * rows that changed and inserts animate. Timestamps are formatted once per
+ * minute and cached, keeping onBind free of allocations.
  */
-public class NotificationAdapter extends RecyclerView.Adapter<NotificationAdapter.ViewHolder> {
+public class NotificationAdapter extends ListAdapter<NotificationEntity, NotificationAdapter.ViewHolder> {
 
-    private List<NotificationEntity> notifications;
+    private static final long MINUTE_MS = 60 * 1000L;
+    // Distinct minutes kept formatted; a full feed rarely spans more
+    private static final int MAX_CACHED_TIMES = 4096;
+
+    static final DiffUtil.ItemCallback<NotificationEntity> DIFF_CALLBACK =
+        new DiffUtil.ItemCallback<NotificationEntity>() {
+            @Override
+            public boolean areItemsTheSame(@NonNull NotificationEntity oldItem, @NonNull NotificationEntity newItem) {
+                return oldItem.id == newItem.id;
+            }
+
+            @Override
+            public boolean areContentsTheSame(@NonNull NotificationEntity oldItem, @NonNull NotificationEntity newItem) {
+                return oldItem.receivedAt == newItem.receivedAt
+                    && oldItem.isVip == newItem.isVip
+                    && oldItem.repeatCount == newItem.repeatCount
+                    && ObjectsCompat.equals(oldItem.appName, newItem.appName)
+                    && ObjectsCompat.equals(oldItem.title, newItem.title)
+                    && ObjectsCompat.equals(oldItem.text, newItem.text);
+            }
+        };
+
+    private LongSparseArray<CharSequence> highlights = new LongSparseArray<>();
+    private LongSparseArray<CharSequence> titleHighlights = new LongSparseArray<>();
+    private final LongSparseArray<String> formattedTimes = new LongSparseArray<>();
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("MMM dd, HH:mm", Locale.getDefault());
     private final OnItemClickListener listener;
 
     public interface OnItemClickListener {
         void onItemClick(NotificationEntity notification);
     }
 
-    public NotificationAdapter(List<NotificationEntity> notifications, OnItemClickListener listener) {
-        this.notifications = notifications;
+    public NotificationAdapter(OnItemClickListener listener) {
+        super(DIFF_CALLBACK);
         this.listener = listener;
+        setHasStableIds(true);
     }
 
     @NonNull
@@ -38,44 +73,87 @@ public class NotificationAdapter extends RecyclerView.Adapter<NotificationAdapte
     public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(parent.getContext())
             .inflate(R.layout.item_notification, parent, false);
-        return new ViewHolder(view);
+        ViewHolder holder = new ViewHolder(view);
+        view.setOnClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (listener != null && position != RecyclerView.NO_POSITION) {
+                listener.onItemClick(getItem(position));
+            }
+        });
+        return holder;
     }
 
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        NotificationEntity notification = notifications.get(position);
+        NotificationEntity notification = getItem(position);
 
         holder.appNameText.setText(notification.appName);
-        holder.titleText.setText(notification.title);
-        holder.messageText.setText(notification.text);
-        holder.timeText.setText(formatTime(notification.receivedAt));
+        CharSequence titleHighlight = titleHighlights.get(notification.id);
+        holder.titleText.setText(titleHighlight != null ? titleHighlight : notification.title);
+        CharSequence highlight = highlights.get(notification.id);
+        holder.messageText.setText(highlight != null ? highlight : notification.text);
+        holder.timeText.setText(formattedTimes.get(notification.receivedAt / MINUTE_MS));
 
         if (notification.isVip) {
             holder.vipIndicator.setVisibility(View.VISIBLE);
         } else {
             holder.vipIndicator.setVisibility(View.GONE);
         }
-
-        holder.itemView.setOnClickListener(v -> {
-            if (listener != null) {
-                listener.onItemClick(notification);
-            }
-        });
     }
 
     @Override
-    public int getItemCount() {
-        return notifications.size();
+    public long getItemId(int position) {
+        return getItem(position).id;
     }
 
     public void updateData(List<NotificationEntity> newNotifications) {
-        this.notifications = newNotifications;
-        notifyDataSetChanged();
+        updateData(newNotifications, Collections.emptyMap(), Collections.emptyMap());
     }
 
-    private String formatTime(long timestamp) {
-        SimpleDateFormat sdf = new SimpleDateFormat("MMM dd, HH:mm", Locale.getDefault());
-        return sdf.format(new Date(timestamp));
+    /**
+     * Show search results, replacing message text with highlighted snippets and titles
+     * with highlighted titles, both by notification ID
+     * The list must be a new instance; it is diffed against the current one off the main thread.
+     */
+    public void updateData(List<NotificationEntity> newNotifications, Map<Long, CharSequence> newHighlights,
+                           Map<Long, CharSequence> newTitleHighlights) {
+        preformatTimes(newNotifications);
+
+        LongSparseArray<CharSequence> nextHighlights = toSparseArray(newHighlights);
+        LongSparseArray<CharSequence> nextTitleHighlights = toSparseArray(newTitleHighlights);
+        boolean highlightsChanged = highlights.size() > 0 || nextHighlights.size() > 0
+            || titleHighlights.size() > 0 || nextTitleHighlights.size() > 0;
+
+        submitList(newNotifications, () -> {
+            highlights = nextHighlights;
+            titleHighlights = nextTitleHighlights;
+            // Snippets are not part of the diff, so rebind rows when they may have changed
+            if (highlightsChanged) {
+                notifyItemRangeChanged(0, getItemCount());
+            }
+        });
+    }
+
+    private static LongSparseArray<CharSequence> toSparseArray(Map<Long, CharSequence> map) {
+        LongSparseArray<CharSequence> array = new LongSparseArray<>(map.size());
+        for (Map.Entry<Long, CharSequence> entry : map.entrySet()) {
+            array.put(entry.getKey(), entry.getValue());
+        }
+        return array;
+    }
+
+    private void preformatTimes(List<NotificationEntity> notifications) {
+        if (formattedTimes.size() > MAX_CACHED_TIMES) {
+            formattedTimes.clear();
+        }
+        Date date = new Date();
+        for (NotificationEntity notification : notifications) {
+            long minute = notification.receivedAt / MINUTE_MS;
+            if (formattedTimes.get(minute) == null) {
+                date.setTime(minute * MINUTE_MS);
+                formattedTimes.put(minute, timeFormat.format(date));
+            }
+        }
     }
 
     static class ViewHolder extends RecyclerView.ViewHolder {
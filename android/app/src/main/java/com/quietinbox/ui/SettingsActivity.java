@@ -4,12 +4,13 @@ import android.content.Intent;
 import android.os.Bundle;
 import android.provider.Settings;
 import android.widget.Button;
+import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 
 import com.quietinbox.R;
-import com.quietinbox.services.SyncService;
+import com.quietinbox.services.SyncWorker;
 
 /**
  * Settings activity
@@ -32,7 +33,9 @@ public class SettingsActivity extends AppCompatActivity {
 
         Button syncButton = findViewById(R.id.syncButton);
         syncButton.setOnClickListener(v -> {
-            startService(new Intent(this, SyncService.class));
+            if (!SyncWorker.requestSync(this)) {
+                Toast.makeText(this, R.string.error_sync_offline, Toast.LENGTH_SHORT).show();
+            }
         });
     }
 
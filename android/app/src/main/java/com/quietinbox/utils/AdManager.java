@@ -31,11 +31,6 @@ public class AdManager {
 
     private AdManager(Context context) {
         this.config = ConfigLoader.getInstance(context);
-
-        // Initialize Mobile Ads SDK
-        MobileAds.initialize(context, initializationStatus -> {
-            Log.d(TAG, "Mobile Ads SDK initialized");
-        });
     }
 
     public static synchronized AdManager getInstance(Context context) {
@@ -45,6 +40,17 @@ public class AdManager {
         return instance;
     }
 
+    /**
+     * Initialize the Mobile Ads SDK and preload an interstitial
+     * Blocks while the SDK starts up, so call it off the main thread (see AppStartup).
+     */
+    public void initialize(Context context) {
+        MobileAds.initialize(context, initializationStatus -> {
+            Log.d(TAG, "Mobile Ads SDK initialized");
+            preloadInterstitialAd(context);
+        });
+    }
+
     /**
      * Load and display banner ad in the provided container
      */
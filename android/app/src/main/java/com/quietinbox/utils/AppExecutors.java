@@ -0,0 +1,207 @@
+package com.quietinbox.utils;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * App-wide thread pools, one per kind of work, so slow work of one kind never
+ * queues behind or starves another
+ * INGEST handles incoming notifications and runs at raised priority, IO is
+ * database work for the UI and startup, NETWORK runs sync, BACKGROUND is for
+ * long or deferrable jobs at the lowest priority.
+ * Each pool orders its queue by task priority (FIFO within a priority) and records
+ * "executor.<pool>.queue" and ".run" histograms plus a ".rejected" counter.
+ */
+public class AppExecutors {
+    private static final String TAG = "AppExecutors";
+    private static AppExecutors instance;
+
+    public enum Pool {
+        INGEST(1, Process.THREAD_PRIORITY_FOREGROUND),
+        IO(2, Process.THREAD_PRIORITY_DEFAULT),
+        // Sync's two phase chains plus the outbox fan-out continuations
+        NETWORK(3, Process.THREAD_PRIORITY_BACKGROUND),
+        BACKGROUND(1, Process.THREAD_PRIORITY_LOWEST);
+
+        private final int threads;
+        private final int threadPriority;
+
+        Pool(int threads, int threadPriority) {
+            this.threads = threads;
+            this.threadPriority = threadPriority;
+        }
+    }
+
+    public enum Priority {
+        HIGH, NORMAL, LOW
+    }
+
+    // Awaited in this order on shutdown, so a short deadline drops deferrable work, not ingest
+    private static final Pool[] SHUTDOWN_ORDER = {Pool.INGEST, Pool.IO, Pool.NETWORK, Pool.BACKGROUND};
+
+    private final Map<Pool, PriorityPool> pools = new EnumMap<>(Pool.class);
+
+    private AppExecutors() {
+        for (Pool pool : Pool.values()) {
+            pools.put(pool, new PriorityPool(pool));
+        }
+    }
+
+    public static synchronized AppExecutors getInstance() {
+        if (instance == null) {
+            instance = new AppExecutors();
+        }
+        return instance;
+    }
+
+    /**
+     * The pool as an executor; plain tasks run at NORMAL priority
+     */
+    public ExecutorService get(Pool pool) {
+        return pools.get(pool);
+    }
+
+    public void execute(Pool pool, Priority priority, Runnable task) {
+        pools.get(pool).execute(new Task(task, priority));
+    }
+
+    /**
+     * Stop accepting work, then let queued tasks finish in the background
+     * Pools are awaited in order and anything still queued at the deadline is dropped.
+     * Returns immediately with a future that completes once every pool has stopped;
+     * the next getInstance() creates fresh pools.
+     */
+    public static CompletableFuture<Void> shutdown(long timeoutMs) {
+        AppExecutors executors;
+        synchronized (AppExecutors.class) {
+            executors = instance;
+            instance = null;
+        }
+        CompletableFuture<Void> terminated = new CompletableFuture<>();
+        if (executors == null) {
+            terminated.complete(null);
+            return terminated;
+        }
+
+        for (PriorityPool executor : executors.pools.values()) {
+            executor.shutdown();
+        }
+        new Thread(() -> {
+            executors.awaitTermination(timeoutMs);
+            terminated.complete(null);
+        }, "executor-shutdown").start();
+        return terminated;
+    }
+
+    private void awaitTermination(long timeoutMs) {
+        long deadline = SystemClock.elapsedRealtime() + timeoutMs;
+        for (Pool pool : SHUTDOWN_ORDER) {
+            PriorityPool executor = pools.get(pool);
+            try {
+                long remaining = Math.max(0, deadline - SystemClock.elapsedRealtime());
+                if (!executor.awaitTermination(remaining, TimeUnit.MILLISECONDS)) {
+                    int dropped = executor.shutdownNow().size();
+                    Log.w(TAG, pool + " pool did not finish in time, dropped " + dropped + " tasks");
+                }
+            } catch (InterruptedException e) {
+                for (PriorityPool remainingPool : pools.values()) {
+                    remainingPool.shutdownNow();
+                }
+                return;
+            }
+        }
+        Log.d(TAG, "All pools shut down");
+    }
+
+    /**
+     * Queue entry carrying its priority, submission order and enqueue time
+     */
+    private static final class Task implements Runnable, Comparable<Task> {
+        private static final AtomicLong SEQUENCE = new AtomicLong();
+
+        final Runnable runnable;
+        final Priority priority;
+        final long sequence = SEQUENCE.getAndIncrement();
+        final long enqueuedAt = SystemClock.elapsedRealtime();
+        long startedAt;
+
+        Task(Runnable runnable, Priority priority) {
+            this.runnable = runnable;
+            this.priority = priority;
+        }
+
+        @Override
+        public void run() {
+            runnable.run();
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private static final class PriorityPool extends ThreadPoolExecutor {
+        private final String name;
+        private final Metrics metrics = Metrics.getInstance();
+
+        PriorityPool(Pool pool) {
+            // Fixed size: the queue is unbounded, so threads beyond core would never start
+            super(pool.threads, pool.threads, 30, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(), threadFactory(pool));
+            this.name = pool.name().toLowerCase(Locale.ROOT);
+            allowCoreThreadTimeOut(true);
+            setRejectedExecutionHandler((task, executor) -> {
+                metrics.increment("executor." + name + ".rejected");
+                throw new RejectedExecutionException(name + " pool rejected a task");
+            });
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            super.execute(command instanceof Task ? command : new Task(command, Priority.NORMAL));
+        }
+
+        @Override
+        protected void beforeExecute(Thread thread, Runnable task) {
+            super.beforeExecute(thread, task);
+            Task queued = (Task) task;
+            queued.startedAt = SystemClock.elapsedRealtime();
+            metrics.record("executor." + name + ".queue", queued.startedAt - queued.enqueuedAt);
+        }
+
+        @Override
+        protected void afterExecute(Runnable task, Throwable error) {
+            super.afterExecute(task, error);
+            metrics.record("executor." + name + ".run",
+                SystemClock.elapsedRealtime() - ((Task) task).startedAt);
+            if (error != null) {
+                Log.e(TAG, "Uncaught error in " + name + " pool", error);
+            }
+        }
+
+        private static ThreadFactory threadFactory(Pool pool) {
+            AtomicInteger count = new AtomicInteger();
+            String prefix = pool.name().toLowerCase(Locale.ROOT) + "-";
+            return runnable -> new Thread(() -> {
+                Process.setThreadPriority(pool.threadPriority);
+                runnable.run();
+            }, prefix + count.incrementAndGet());
+        }
+    }
+}
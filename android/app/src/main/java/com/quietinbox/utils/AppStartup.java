@@ -0,0 +1,213 @@
+package com.quietinbox.utils;
+
+import android.app.Application;
+import android.content.Context;
+import android.os.Build;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.provider.Settings;
+import android.util.Log;
+
+import com.quietinbox.database.AppDatabase;
+import com.quietinbox.database.ProfileEntity;
+import com.quietinbox.database.UserEntity;
+import com.quietinbox.services.RetentionWorker;
+import com.quietinbox.services.SyncManager;
+import com.quietinbox.services.SyncWorker;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Dependency-ordered, lazy initialization of app components
+ * Nothing runs on the caller's thread: ensure() starts a component's dependencies
+ * first and then the component itself on a background thread, once per process.
+ * The Application only starts core components (database, first-run setup,
+ * scheduling, connectivity); ads and billing wait until a UI component asks for them.
+ * The notification listener runs in its own ":listener" process, which only opens
+ * the database; everything else belongs to the main process.
+ * Each component is traced as a systrace section and a "startup.<name>" histogram.
+ */
+public class AppStartup {
+    private static final String TAG = "AppStartup";
+    private static AppStartup instance;
+
+    public static final String LISTENER_PROCESS_SUFFIX = ":listener";
+
+    public enum Component {
+        CONFIG,
+        DATABASE(CONFIG),
+        FIRST_RUN(DATABASE),
+        SCHEDULING(CONFIG),
+        CONNECTIVITY(CONFIG),
+        ADS(CONFIG),
+        BILLING(DATABASE);
+
+        private final Component[] dependencies;
+
+        Component(Component... dependencies) {
+            this.dependencies = dependencies;
+        }
+    }
+
+    private final Context context;
+    private final Map<Component, CompletableFuture<Void>> started = new EnumMap<>(Component.class);
+
+    private AppStartup(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    public static synchronized AppStartup getInstance(Context context) {
+        if (instance == null) {
+            instance = new AppStartup(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Components this process always needs, started in the background
+     */
+    public void startCore() {
+        ensure(Component.DATABASE);
+        if (isListenerProcess()) {
+            return;
+        }
+        ensure(Component.FIRST_RUN);
+        ensure(Component.SCHEDULING);
+        ensure(Component.CONNECTIVITY);
+    }
+
+    public boolean isListenerProcess() {
+        String name = getProcessName();
+        return name != null && name.endsWith(LISTENER_PROCESS_SUFFIX);
+    }
+
+    /**
+     * Start a component after its dependencies; completes once it is initialized
+     */
+    public synchronized CompletableFuture<Void> ensure(Component component) {
+        CompletableFuture<Void> future = started.get(component);
+        if (future != null) {
+            return future;
+        }
+
+        CompletableFuture<?>[] dependencies = new CompletableFuture<?>[component.dependencies.length];
+        for (int i = 0; i < dependencies.length; i++) {
+            dependencies[i] = ensure(component.dependencies[i]);
+        }
+        future = CompletableFuture.allOf(dependencies)
+            .thenRunAsync(() -> trace(component), AppExecutors.getInstance().get(AppExecutors.Pool.IO));
+        future.exceptionally(e -> {
+            Log.e(TAG, "Failed to initialize " + component, e);
+            return null;
+        });
+        started.put(component, future);
+        return future;
+    }
+
+    private void trace(Component component) {
+        String name = component.name().toLowerCase(Locale.ROOT);
+        long start = SystemClock.elapsedRealtime();
+        Trace.beginSection("startup:" + name);
+        try {
+            initialize(component);
+        } finally {
+            Trace.endSection();
+            long elapsed = SystemClock.elapsedRealtime() - start;
+            Metrics.getInstance().record("startup." + name, elapsed);
+            Log.d(TAG, "Initialized " + name + " in " + elapsed + "ms");
+        }
+    }
+
+    private void initialize(Component component) {
+        switch (component) {
+            case CONFIG:
+                ConfigLoader.getInstance(context);
+                break;
+            case DATABASE:
+                // Open off the main thread so the first query does not pay for it
+                AppDatabase.getInstance(context).getOpenHelper().getWritableDatabase();
+                break;
+            case FIRST_RUN:
+                createDefaultUser();
+                break;
+            case SCHEDULING:
+                RetentionWorker.schedule(context);
+                SyncWorker.schedule(context);
+                break;
+            case CONNECTIVITY:
+                // Watch connectivity so sync resumes as soon as the network returns
+                SyncManager.getInstance(context);
+                break;
+            case ADS:
+                AdManager.getInstance(context).initialize(context);
+                break;
+            case BILLING:
+                BillingManager.getInstance(context);
+                break;
+        }
+    }
+
+    /**
+     * Create the default user and profile on first run
+     */
+    private void createDefaultUser() {
+        AppDatabase db = AppDatabase.getInstance(context);
+        UserEntity user = db.userDao().getUser();
+        if (user != null) {
+            return;
+        }
+
+        user = new UserEntity();
+        user.deviceId = getDeviceId();
+        user.email = null;
+        user.isPro = false;
+        user.createdAt = System.currentTimeMillis();
+
+        long userId = db.userDao().insert(user);
+        Log.d(TAG, "Created default user with ID: " + userId);
+
+        // Registration creates the same Default profile on the server, and the first pull
+        // links this copy to it; queueing it would push a second one
+        ProfileEntity defaultProfile = new ProfileEntity();
+        defaultProfile.name = "Default";
+        defaultProfile.quietHoursStart = "22:00";
+        defaultProfile.quietHoursEnd = "07:00";
+        defaultProfile.rulesJson = "{}";
+        defaultProfile.isActive = true;
+        defaultProfile.synced = true;
+
+        long profileId = db.profileDao().insert(defaultProfile);
+        Log.d(TAG, "Created default profile with ID: " + profileId);
+    }
+
+    private static String getProcessName() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            return Application.getProcessName();
+        }
+        try (BufferedReader reader = new BufferedReader(new FileReader("/proc/self/cmdline"))) {
+            String line = reader.readLine();
+            return line != null ? line.trim() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private String getDeviceId() {
+        try {
+            String androidId = Settings.Secure.getString(
+                context.getContentResolver(),
+                Settings.Secure.ANDROID_ID
+            );
+            return androidId != null ? androidId : UUID.randomUUID().toString();
+        } catch (Exception e) {
+            return UUID.randomUUID().toString();
+        }
+    }
+}
@@ -195,7 +195,7 @@ public class BillingManager implements PurchasesUpdatedListener {
     }
 
     private void grantProAccess() {
-        new Thread(() -> {
+        AppExecutors.getInstance().get(AppExecutors.Pool.IO).execute(() -> {
             try {
                 UserEntity user = database.userDao().getUser();
                 if (user != null) {
@@ -205,7 +205,7 @@ public class BillingManager implements PurchasesUpdatedListener {
             } catch (Exception e) {
                 Log.e(TAG, "Error granting Pro access", e);
             }
-        }).start();
+        });
     }
 
     /**
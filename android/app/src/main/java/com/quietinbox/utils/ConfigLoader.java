@@ -3,6 +3,8 @@ package com.quietinbox.utils;
 import android.content.Context;
 import android.util.Log;
 
+import androidx.annotation.VisibleForTesting;
+
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Properties;
@@ -55,6 +57,14 @@ public class ConfigLoader {
         properties.setProperty("app.offline.mode.enabled", "true");
     }
 
+    /**
+     * Replace one setting in memory, e.g. to point tests at a local server
+     */
+    @VisibleForTesting
+    public void override(String key, String value) {
+        properties.setProperty(key, value);
+    }
+
     public String getString(String key) {
         return properties.getProperty(key, "");
     }
@@ -119,7 +129,65 @@ public class ConfigLoader {
         return getInt("backend.timeout.read", 30);
     }
 
+    public int getSyncIntervalMinutes() {
+        return getInt("backend.sync.interval.minutes", 60);
+    }
+
+    public boolean isBulkSyncDeferredOnMetered() {
+        return getBoolean("backend.sync.defer.metered", true);
+    }
+
+    public int getRetryMaxAttempts() {
+        return getInt("backend.retry.max.attempts", 3);
+    }
+
+    public int getRetryBackoffSeconds() {
+        return getInt("backend.retry.backoff.seconds", 5);
+    }
+
+    // Privacy getters
+    public boolean isContentUploadEnabled() {
+        return getBoolean("privacy.content.upload.enabled", false);
+    }
+
+    public boolean isHourlyAggregationEnabled() {
+        return getBoolean("privacy.metadata.aggregate.hourly", false);
+    }
+
+    public boolean isDebugLoggingEnabled() {
+        return getBoolean("debug.logging.enabled", false);
+    }
+
+    public boolean isSlowCallTraceEnabled() {
+        return getBoolean("debug.network.trace.enabled", false);
+    }
+
+    public int getSlowCallThresholdMs() {
+        return getInt("debug.network.slow.call.ms", 2000);
+    }
+
     public boolean isOfflineModeEnabled() {
         return getBoolean("app.offline.mode.enabled", true);
     }
+
+    // Notification getters
+    public int getNotificationBatchSize() {
+        return getInt("notification.batch.size", 50);
+    }
+
+    public int getNotificationRetentionDays() {
+        return getInt("notification.retention.days", 30);
+    }
+
+    public int getArchiveAfterDays() {
+        return getInt("notification.archive.after.days", 14);
+    }
+
+    public int getArchiveRetentionDays() {
+        return getInt("notification.archive.retention.days", 365);
+    }
+
+    public int getDedupeWindowMinutes() {
+        return getInt("notification.dedupe.window.minutes", 60);
+    }
 }
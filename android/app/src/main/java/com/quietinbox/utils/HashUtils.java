@@ -0,0 +1,67 @@
+package com.quietinbox.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Hashing helpers: fast FNV-1a for on-device deduplication, and keyed
+ * HMAC-SHA256 for values that leave the device
+ */
+public final class HashUtils {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private HashUtils() {}
+
+    /**
+     * 64-bit FNV-1a hash over the given fields, separated so ("ab", "c") != ("a", "bc")
+     */
+    public static long fnv1a64(String... fields) {
+        long hash = FNV_OFFSET_BASIS;
+        for (String field : fields) {
+            if (field != null) {
+                for (int i = 0; i < field.length(); i++) {
+                    char c = field.charAt(i);
+                    hash ^= (c & 0xff);
+                    hash *= FNV_PRIME;
+                    hash ^= (c >>> 8);
+                    hash *= FNV_PRIME;
+                }
+            }
+            // Field separator
+            hash ^= 0xff;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Hex HMAC-SHA256 over the given fields, each length-prefixed so ("ab", "c") != ("a", "bc")
+     * Without the key, guessing an input (e.g. a contact name) cannot be checked against the output.
+     */
+    public static String hmacSha256Hex(byte[] key, String... fields) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            for (String field : fields) {
+                byte[] bytes = field != null ? field.getBytes(StandardCharsets.UTF_8) : new byte[0];
+                int length = field != null ? bytes.length : -1;
+                mac.update(new byte[] {
+                    (byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length
+                });
+                mac.update(bytes);
+            }
+            byte[] digest = mac.doFinal();
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >>> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 unavailable", e);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.quietinbox.utils;
+
+import android.util.Log;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-process metrics registry: named histograms and counters
+ * Recording is lock-free so it is safe on hot paths; nothing leaves the device,
+ * dump() writes a summary to logcat. Each process has its own registry.
+ */
+public class Metrics {
+    private static final String TAG = "Metrics";
+    private static Metrics instance;
+
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    private Metrics() {}
+
+    public static synchronized Metrics getInstance() {
+        if (instance == null) {
+            instance = new Metrics();
+        }
+        return instance;
+    }
+
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    public void record(String name, long value) {
+        histogram(name).record(value);
+    }
+
+    public void increment(String name) {
+        add(name, 1);
+    }
+
+    public void add(String name, long delta) {
+        counters.computeIfAbsent(name, key -> new AtomicLong()).addAndGet(delta);
+    }
+
+    public long getCount(String name) {
+        AtomicLong counter = counters.get(name);
+        return counter != null ? counter.get() : 0;
+    }
+
+    /**
+     * Log every counter and a count/p50/p95/max line per histogram, sorted by name
+     */
+    public void dump() {
+        for (String line : summary()) {
+            Log.i(TAG, line);
+        }
+    }
+
+    /**
+     * Write the same summary as dump(), e.g. from a service's dumpsys hook
+     */
+    public void dump(PrintWriter writer) {
+        for (String line : summary()) {
+            writer.println(line);
+        }
+    }
+
+    private List<String> summary() {
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, AtomicLong> entry : new TreeMap<>(counters).entrySet()) {
+            lines.add(entry.getKey() + " = " + entry.getValue().get());
+        }
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(histograms).entrySet()) {
+            Histogram h = entry.getValue();
+            lines.add(entry.getKey() + " n=" + h.getCount() + " p50=" + h.percentile(50)
+                + " p95=" + h.percentile(95) + " max=" + h.getMax());
+        }
+        return lines;
+    }
+
+    public void reset() {
+        histograms.clear();
+        counters.clear();
+    }
+
+    /**
+     * Histogram with power-of-two buckets
+     * Percentiles are bucket upper bounds, accurate to within a factor of two,
+     * which is enough to tell 5 ms from 500 ms.
+     */
+    public static class Histogram {
+        private static final int BUCKETS = 64;
+
+        // Bucket i holds values in [2^(i-1), 2^i), bucket 0 holds values <= 0
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+        public void record(long value) {
+            int bucket = value <= 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+            buckets.incrementAndGet(bucket);
+            count.incrementAndGet();
+            sum.addAndGet(value);
+
+            long current;
+            while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+                // Retry until max is at least value
+            }
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public long getSum() {
+            return sum.get();
+        }
+
+        public long getMax() {
+            return count.get() == 0 ? 0 : max.get();
+        }
+
+        public double getMean() {
+            long n = count.get();
+            return n == 0 ? 0 : (double) sum.get() / n;
+        }
+
+        /**
+         * Upper bound of the bucket holding the given percentile, capped at the observed max
+         */
+        public long percentile(double percentile) {
+            long n = count.get();
+            if (n == 0) {
+                return 0;
+            }
+            // At least rank 1, so p0 reports the lowest bucket rather than 0
+            long rank = Math.max(1, (long) Math.ceil(n * percentile / 100.0));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    long upper = i == 0 ? 0 : (i >= 63 ? Long.MAX_VALUE : (1L << i) - 1);
+                    return Math.min(upper, getMax());
+                }
+            }
+            return getMax();
+        }
+    }
+}
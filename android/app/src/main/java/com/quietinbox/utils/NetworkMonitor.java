@@ -0,0 +1,100 @@
+package com.quietinbox.utils;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Cached view of the default network
+ * Kept current by a ConnectivityManager callback, so checks are a field read
+ * instead of a connect attempt that has to time out
+ */
+public class NetworkMonitor {
+    private static final String TAG = "NetworkMonitor";
+    private static NetworkMonitor instance;
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean connected;
+    private volatile boolean metered;
+
+    /**
+     * Notified on a callback thread when connectivity or the metered status changes
+     */
+    public interface Listener {
+        void onNetworkChanged(boolean connected, boolean metered);
+    }
+
+    private NetworkMonitor(Context context) {
+        ConnectivityManager connectivityManager =
+            (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+
+        // Seed from the current state; the callback takes over from here
+        Network active = connectivityManager.getActiveNetwork();
+        update(active != null ? connectivityManager.getNetworkCapabilities(active) : null);
+
+        connectivityManager.registerDefaultNetworkCallback(new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onCapabilitiesChanged(@NonNull Network network, @NonNull NetworkCapabilities capabilities) {
+                update(capabilities);
+            }
+
+            @Override
+            public void onLost(@NonNull Network network) {
+                update(null);
+            }
+        });
+    }
+
+    public static synchronized NetworkMonitor getInstance(Context context) {
+        if (instance == null) {
+            instance = new NetworkMonitor(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Whether the default network is metered; false while offline
+     */
+    public boolean isMetered() {
+        return connected && metered;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private void update(NetworkCapabilities capabilities) {
+        boolean wasConnected = connected;
+        boolean wasMetered = metered;
+        boolean nowConnected = capabilities != null
+            && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+            && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED);
+        boolean nowMetered = capabilities == null
+            || !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED);
+
+        metered = nowMetered;
+        connected = nowConnected;
+
+        if (nowConnected != wasConnected || (nowConnected && nowMetered != wasMetered)) {
+            Log.d(TAG, nowConnected ? "Network available" + (nowMetered ? " (metered)" : "") : "Network lost");
+            for (Listener listener : listeners) {
+                listener.onNetworkChanged(nowConnected, nowMetered);
+            }
+        }
+    }
+}
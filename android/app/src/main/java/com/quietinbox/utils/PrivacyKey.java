@@ -0,0 +1,50 @@
+package com.quietinbox.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Base64;
+
+import java.security.SecureRandom;
+
+/**
+ * Device-local secret for keyed hashes of personal data in metadata-only sync
+ * Generated on first use and kept in private preferences; it is never uploaded,
+ * so the server cannot test guesses against the hashes it stores.
+ */
+public class PrivacyKey {
+    private static final String PREFS_NAME = "privacy_key";
+    private static final String KEY_SENDER_HASH = "sender_hash_key";
+    private static final int KEY_BYTES = 32;
+    private static PrivacyKey instance;
+
+    private final SharedPreferences prefs;
+    private byte[] senderHashKey;
+
+    private PrivacyKey(Context context) {
+        this.prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    public static synchronized PrivacyKey getInstance(Context context) {
+        if (instance == null) {
+            instance = new PrivacyKey(context);
+        }
+        return instance;
+    }
+
+    /**
+     * HMAC key for sender hashes
+     */
+    public synchronized byte[] getSenderHashKey() {
+        if (senderHashKey == null) {
+            String stored = prefs.getString(KEY_SENDER_HASH, null);
+            if (stored != null) {
+                senderHashKey = Base64.decode(stored, Base64.NO_WRAP);
+            } else {
+                senderHashKey = new byte[KEY_BYTES];
+                new SecureRandom().nextBytes(senderHashKey);
+                prefs.edit().putString(KEY_SENDER_HASH, Base64.encodeToString(senderHashKey, Base64.NO_WRAP)).commit();
+            }
+        }
+        return senderHashKey.clone();
+    }
+}
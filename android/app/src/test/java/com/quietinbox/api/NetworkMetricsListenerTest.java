@@ -0,0 +1,53 @@
+package com.quietinbox.api;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import okhttp3.Request;
+import okhttp3.RequestBody;
+
+public class NetworkMetricsListenerTest {
+
+    @Test
+    public void keepsMethodAndPath() {
+        assertEquals("GET /v1/profile", name(request("GET", "https://api.example.com/v1/profile")));
+        assertEquals("POST /v1/sync/push", name(request("POST", "https://api.example.com/v1/sync/push")));
+    }
+
+    @Test
+    public void numericSegmentsCollapseToId() {
+        assertEquals("DELETE /v1/vip/{id}", name(request("DELETE", "https://api.example.com/v1/vip/42")));
+        assertEquals("PUT /v1/profile/{id}", name(request("PUT", "https://api.example.com/v1/profile/7")));
+    }
+
+    @Test
+    public void mixedSegmentsAreKept() {
+        assertEquals("GET /v1/vip/a42", name(request("GET", "https://api.example.com/v1/vip/a42")));
+        assertEquals("GET /v1/recommendations/deferral-windows",
+            name(request("GET", "https://api.example.com/v1/recommendations/deferral-windows")));
+    }
+
+    @Test
+    public void ignoresQueryAndTrailingSlash() {
+        assertEquals("GET /v1/sync/pull",
+            name(request("GET", "https://api.example.com/v1/sync/pull/?cursor=12&limit=100")));
+    }
+
+    @Test
+    public void prefixPathOfBaseUrlIsIncluded() {
+        assertEquals("GET /api/health", name(request("GET", "https://example.com/api/health")));
+    }
+
+    private static String name(Request request) {
+        return NetworkMetricsListener.endpointName(request);
+    }
+
+    private static Request request(String method, String url) {
+        Request.Builder builder = new Request.Builder().url(url);
+        if ("GET".equals(method) || "DELETE".equals(method)) {
+            return builder.method(method, null).build();
+        }
+        return builder.method(method, RequestBody.create(new byte[0], null)).build();
+    }
+}
@@ -0,0 +1,126 @@
+package com.quietinbox.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.quietinbox.models.SyncItem;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+
+public class SyncItemAdapterTest {
+    private final Gson gson = new GsonBuilder()
+        .registerTypeHierarchyAdapter(SyncItem.class, new SyncItemAdapter())
+        .create();
+
+    @Test
+    public void writesTypedItemUnderData() {
+        SyncItem.Dismissal item = new SyncItem.Dismissal("d-1");
+        item.notification_local_id = 42;
+        item.dismissed_at = 1700000000000L;
+
+        assertEquals("{\"local_id\":\"d-1\",\"type\":\"dismissal\",\"data\":"
+                + "{\"notification_local_id\":42,\"dismissed_at\":1700000000000}}",
+            gson.toJson(item, SyncItem.class));
+    }
+
+    @Test
+    public void notificationRoundTrips() {
+        SyncItem.Notification item = new SyncItem.Notification("7");
+        item.app_package = "com.example";
+        item.title = "Title";
+        item.text = null;
+        item.action = "NOW";
+        item.confidence = 0.75f;
+        item.received_at = 123456789L;
+
+        SyncItem.Notification read = (SyncItem.Notification) roundTrip(item);
+        assertEquals("7", read.local_id);
+        assertEquals("com.example", read.app_package);
+        assertEquals("Title", read.title);
+        assertNull(read.text);
+        assertEquals("NOW", read.action);
+        assertEquals(0.75f, read.confidence, 0f);
+        assertEquals(123456789L, read.received_at);
+    }
+
+    @Test
+    public void metadataRoundTrips() {
+        SyncItem.NotificationMeta item = new SyncItem.NotificationMeta("8");
+        item.app_package = "com.example";
+        item.received_at = 5L;
+        item.action = "LATER";
+        item.confidence = 0.5f;
+        item.sender_hash = "abc123";
+        item.repeat_count = 4;
+
+        SyncItem.NotificationMeta read = (SyncItem.NotificationMeta) roundTrip(item);
+        assertEquals("notification_meta", read.type);
+        assertEquals("abc123", read.sender_hash);
+        assertEquals(5L, read.received_at);
+        assertEquals(4, read.repeat_count);
+    }
+
+    @Test
+    public void missingRepeatCountReadsAsZero() {
+        SyncItem.Notification read = (SyncItem.Notification) gson.fromJson(
+            "{\"local_id\":\"3\",\"type\":\"notification\",\"data\":"
+                + "{\"confidence\":0.5,\"received_at\":1}}", SyncItem.class);
+        assertEquals(0, read.repeat_count);
+    }
+
+    @Test
+    public void histogramRoundTrips() {
+        SyncItem.NotificationHistogram item = new SyncItem.NotificationHistogram("hist-0-1");
+        item.app_package = "com.example";
+        item.hour_start = 3600000L;
+        item.first_local_id = 1;
+        item.count = 3;
+        item.vip_count = 1;
+        item.confidence_sum = 2.5f;
+        item.repeat_count = 2;
+        item.actions = new HashMap<>();
+        item.actions.put("NOW", 1);
+        item.actions.put("LATER", 2);
+
+        SyncItem.NotificationHistogram read = (SyncItem.NotificationHistogram) roundTrip(item);
+        assertEquals(3, read.count);
+        assertEquals(1, read.vip_count);
+        assertEquals(2, read.repeat_count);
+        assertEquals(item.actions, read.actions);
+    }
+
+    @Test
+    public void subclassTypeReadsThroughHierarchyAdapter() {
+        SyncItem.Dismissal item = new SyncItem.Dismissal("d-2");
+        item.notification_local_id = 9;
+
+        SyncItem.Dismissal read = gson.fromJson(gson.toJson(item), SyncItem.Dismissal.class);
+        assertEquals(9, read.notification_local_id);
+    }
+
+    @Test
+    public void nullWritesAndReadsAsNull() {
+        assertEquals("null", gson.toJson(null, SyncItem.class));
+        assertNull(gson.fromJson("null", SyncItem.class));
+    }
+
+    @Test
+    public void unknownTypeIsRejected() {
+        try {
+            gson.fromJson("{\"local_id\":\"1\",\"type\":\"other\",\"data\":{}}", SyncItem.class);
+            throw new AssertionError("Expected JsonParseException");
+        } catch (JsonParseException e) {
+            assertTrue(e.getMessage().contains("other"));
+        }
+    }
+
+    private SyncItem roundTrip(SyncItem item) {
+        return gson.fromJson(gson.toJson(item, SyncItem.class), SyncItem.class);
+    }
+}
@@ -0,0 +1,147 @@
+package com.quietinbox.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import com.quietinbox.models.SyncItem;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JVM microbenchmark: a metadata push chunk encoded by SyncItemAdapter against the
+ * nested-map encoding it replaced, both streamed into a discarding sink
+ * Measures ns, heap bytes allocated and encoded bytes per item. Allocation is
+ * counted per thread by the JVM, so it is stable enough to assert on; timings on
+ * shared CI machines are not, and are only reported.
+ * Opt-in: ./gradlew testDebugUnitTest -Pbenchmarks
+ */
+public class SyncItemEncodingBenchmark {
+    private static final int ITEMS = 10_000;
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int MEASURED_ROUNDS = 50;
+
+    private final Gson adapterGson = new GsonBuilder()
+        .registerTypeHierarchyAdapter(SyncItem.class, new SyncItemAdapter())
+        .create();
+    private final Gson reflectiveGson = new Gson();
+    private com.sun.management.ThreadMXBean threads;
+
+    @Before
+    public void setUp() {
+        assumeTrue("Benchmark is opt-in: -Pbenchmarks", Boolean.getBoolean("quietinbox.benchmarks"));
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue("No per-thread allocation counter", threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    public void adapterMatchesNestedMapEncoding() throws IOException {
+        List<SyncItem> items = new ArrayList<>(ITEMS);
+        List<Map<String, Object>> maps = new ArrayList<>(ITEMS);
+        for (int i = 0; i < ITEMS; i++) {
+            SyncItem.NotificationMeta item = new SyncItem.NotificationMeta(String.valueOf(i));
+            item.app_package = "com.example.app" + (i % 40);
+            item.received_at = 1700000000000L + i * 1000L;
+            item.action = i % 3 == 0 ? "NOW" : "LATER";
+            item.confidence = 0.5f + (i % 50) / 100f;
+            item.sender_hash = String.format("%064x", i);
+            item.repeat_count = i % 7 == 0 ? 2 : 0;
+            items.add(item);
+            maps.add(asMap(item));
+        }
+        Type itemList = new TypeToken<List<SyncItem>>() {}.getType();
+
+        assertEquals(reflectiveGson.toJson(maps), adapterGson.toJson(items, itemList));
+
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            encode(adapterGson, items, itemList);
+            encode(reflectiveGson, maps, List.class);
+        }
+        long adapterNs = 0;
+        long mapNs = 0;
+        long adapterAllocated = 0;
+        long mapAllocated = 0;
+        long bytes = 0;
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            long allocated = allocatedBytes();
+            long start = System.nanoTime();
+            bytes = encode(adapterGson, items, itemList);
+            adapterNs += System.nanoTime() - start;
+            adapterAllocated += allocatedBytes() - allocated;
+
+            allocated = allocatedBytes();
+            start = System.nanoTime();
+            encode(reflectiveGson, maps, List.class);
+            mapNs += System.nanoTime() - start;
+            mapAllocated += allocatedBytes() - allocated;
+        }
+
+        long total = (long) ITEMS * MEASURED_ROUNDS;
+        System.out.println("SyncItem encoding: adapter " + adapterNs / total + " ns/item, "
+            + adapterAllocated / total + " B allocated/item; nested maps " + mapNs / total + " ns/item, "
+            + mapAllocated / total + " B allocated/item; " + bytes / ITEMS + " encoded bytes/item");
+        assertTrue("Adapter allocates more than the nested maps", adapterAllocated < mapAllocated);
+    }
+
+    private long allocatedBytes() {
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static Map<String, Object> asMap(SyncItem.NotificationMeta item) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("app_package", item.app_package);
+        data.put("received_at", item.received_at);
+        data.put("action", item.action);
+        data.put("confidence", item.confidence);
+        data.put("sender_hash", item.sender_hash);
+        data.put("repeat_count", item.repeat_count);
+
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("local_id", item.local_id);
+        map.put("type", item.type);
+        map.put("data", data);
+        return map;
+    }
+
+    /**
+     * Stream the value as a request body would be, returning the encoded size
+     */
+    private static long encode(Gson gson, Object value, Type type) throws IOException {
+        CountingSink sink = new CountingSink();
+        Writer writer = new OutputStreamWriter(sink, StandardCharsets.UTF_8);
+        gson.toJson(value, type, gson.newJsonWriter(writer));
+        writer.flush();
+        return sink.count;
+    }
+
+    private static final class CountingSink extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.quietinbox.archive;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ArchiveSegmentTest {
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("archive-test").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void segmentRoundTripsAcrossBlocks() throws IOException {
+        int rows = ArchiveSegmentWriter.BLOCK_ROWS * 2 + 17;
+        File segment = writeSegment(1000, rows, 4242, 99_000);
+
+        try (ArchiveSegmentReader reader = new ArchiveSegmentReader(segment)) {
+            assertEquals(4242, reader.getMaxRowId());
+            assertEquals(99_000, reader.getCutoff());
+
+            List<ArchivedNotification> read = new ArrayList<>();
+            assertTrue(reader.scan(Long.MIN_VALUE, Long.MAX_VALUE, read::add));
+            assertEquals(rows, read.size());
+            for (int i = 0; i < rows; i++) {
+                ArchivedNotification row = read.get(i);
+                assertEquals("com.app" + (i % 3), row.appPackage);
+                assertEquals(1000 + i * 10L, row.receivedAt);
+                assertEquals(i % 2 == 0 ? "NOW" : "LATER", row.action);
+                assertEquals("Title " + i, row.title);
+                assertEquals("Body \u00e9 " + i, row.text);
+            }
+        }
+    }
+
+    @Test
+    public void scanHonoursRangeAndEarlyStop() throws IOException {
+        File segment = writeSegment(1000, ArchiveSegmentWriter.BLOCK_ROWS * 3, 1, 0);
+
+        try (ArchiveSegmentReader reader = new ArchiveSegmentReader(segment)) {
+            List<ArchivedNotification> read = new ArrayList<>();
+            assertTrue(reader.scan(1050, 1100, read::add));
+            assertEquals(5, read.size());
+            assertEquals(1050, read.get(0).receivedAt);
+            assertEquals(1090, read.get(4).receivedAt);
+
+            read.clear();
+            assertFalse(reader.scan(Long.MIN_VALUE, Long.MAX_VALUE, row -> read.add(row) && read.size() < 3));
+            assertEquals(3, read.size());
+        }
+    }
+
+    @Test
+    public void archiveScansSegmentsInTimeOrder() throws IOException {
+        writeSegment(50_000, 10, 20, 60_000);
+        writeSegment(1000, 10, 10, 60_000);
+        NotificationArchive archive = new NotificationArchive(directory);
+
+        List<Long> times = new ArrayList<>();
+        archive.scan(0, Long.MAX_VALUE, row -> times.add(row.receivedAt));
+        assertEquals(20, times.size());
+        assertEquals(1000L, (long) times.get(0));
+        assertEquals(50_090L, (long) times.get(19));
+
+        assertEquals(1, archive.prune(2000));
+        times.clear();
+        archive.scan(0, Long.MAX_VALUE, row -> times.add(row.receivedAt));
+        assertEquals(50_000L, (long) times.get(0));
+    }
+
+    @Test
+    public void watermarkIsTheLatestRunNotTheHighestRowId() throws IOException {
+        NotificationArchive archive = new NotificationArchive(directory);
+        assertNull(archive.getWatermark());
+
+        // An earlier run reached row 500; the next run restarts from low IDs with a later cutoff
+        writeSegment(1000, 10, 400, 5000);
+        writeSegment(2000, 10, 500, 5000);
+        writeSegment(3000, 10, 300, 9000);
+
+        NotificationArchive.Watermark watermark = archive.getWatermark();
+        assertEquals(300, watermark.maxRowId);
+        assertEquals(9000, watermark.cutoff);
+    }
+
+    private File writeSegment(long firstTime, int rows, long maxRowId, long cutoff) throws IOException {
+        try (ArchiveSegmentWriter writer = new ArchiveSegmentWriter(directory)) {
+            for (int i = 0; i < rows; i++) {
+                writer.append(new ArchivedNotification("com.app" + (i % 3), firstTime + i * 10L,
+                    i % 2 == 0 ? "NOW" : "LATER", "Title " + i, "Body \u00e9 " + i));
+            }
+            return writer.commit(maxRowId, cutoff);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.quietinbox.archive;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+public class ColumnCodecTest {
+
+    @Test
+    public void timesRoundTrip() throws IOException {
+        long[] times = {1700000000000L, 1700000000500L, 1699999999000L, 0L, Long.MAX_VALUE};
+        byte[] encoded = ColumnCodec.encodeTimes(times, times.length);
+        assertArrayEquals(times, ColumnCodec.decodeTimes(encoded, times.length));
+    }
+
+    @Test
+    public void dictionaryRoundTripMapsNullToEmpty() throws IOException {
+        String[] values = {"com.a", "com.b", "com.a", null, "com.b"};
+        byte[] encoded = ColumnCodec.encodeDictionary(values, values.length);
+        assertArrayEquals(new String[] {"com.a", "com.b", "com.a", "", "com.b"},
+            ColumnCodec.decodeDictionary(encoded, values.length));
+    }
+
+    @Test
+    public void stringsRoundTripThroughCompression() throws IOException {
+        String[] values = {"Hello", "", "\u00dcn\u00efc\u00f6d\u00e9 \u2713", null};
+        byte[] raw = ColumnCodec.encodeStrings(values, values.length);
+        byte[] restored = ColumnCodec.decompress(ColumnCodec.compress(raw), raw.length);
+        assertArrayEquals(new String[] {"Hello", "", "\u00dcn\u00efc\u00f6d\u00e9 \u2713", ""},
+            ColumnCodec.decodeStrings(restored, values.length));
+    }
+
+    @Test
+    public void truncatedTimesThrowIOException() {
+        long[] times = {1L, 200000L, 300000000L};
+        byte[] encoded = ColumnCodec.encodeTimes(times, times.length);
+        assertCorrupt(() -> ColumnCodec.decodeTimes(
+            Arrays.copyOf(encoded, encoded.length - 1), times.length));
+    }
+
+    @Test
+    public void unterminatedVarintThrowsIOException() {
+        byte[] data = new byte[16];
+        Arrays.fill(data, (byte) 0x80);
+        assertCorrupt(() -> ColumnCodec.decodeTimes(data, 1));
+    }
+
+    @Test
+    public void oversizedStringLengthThrowsIOException() {
+        String[] values = {"hello"};
+        byte[] encoded = ColumnCodec.encodeStrings(values, 1);
+        encoded[0] = 100;
+        assertCorrupt(() -> ColumnCodec.decodeStrings(encoded, 1));
+    }
+
+    @Test
+    public void outOfRangeDictionaryCodeThrowsIOException() {
+        String[] values = {"a", "b"};
+        byte[] encoded = ColumnCodec.encodeDictionary(values, values.length);
+        encoded[encoded.length - 1] = 5;
+        assertCorrupt(() -> ColumnCodec.decodeDictionary(encoded, values.length));
+    }
+
+    @Test
+    public void truncatedCompressedColumnThrowsIOException() {
+        byte[] raw = ColumnCodec.encodeStrings(new String[] {"some text", "more text"}, 2);
+        byte[] compressed = ColumnCodec.compress(raw);
+        assertCorrupt(() -> ColumnCodec.decompress(
+            Arrays.copyOf(compressed, compressed.length / 2), raw.length));
+    }
+
+    private interface Decode {
+        Object run() throws IOException;
+    }
+
+    private static void assertCorrupt(Decode decode) {
+        try {
+            decode.run();
+            fail("Expected IOException");
+        } catch (IOException expected) {
+            // Corruption must surface as a checked, recoverable error
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.quietinbox.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import android.app.Application;
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.List;
+
+/**
+ * Upgrades a database written with the version 1 schema to the current one and
+ * checks Room accepts it with the rows intact
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(application = Application.class, sdk = 33)
+public class MigrationsTest {
+    private static final String DB_NAME = "migration-test.db";
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void versionOneDataSurvivesUpgrade() {
+        SupportSQLiteOpenHelper helper = new FrameworkSQLiteOpenHelperFactory().create(
+            SupportSQLiteOpenHelper.Configuration.builder(context)
+                .name(DB_NAME)
+                .callback(new VersionOneCallback())
+                .build());
+        SupportSQLiteDatabase old = helper.getWritableDatabase();
+        old.execSQL("INSERT INTO notifications (app_package, app_name, title, text, received_at, action, "
+            + "confidence, is_vip, synced, dismissed) VALUES "
+            + "('com.chat', 'Chat', 'Alice', 'lunch tomorrow?', 1000, 'LATER', 0.8, 0, 0, 0), "
+            + "('com.chat', 'Chat', 'Bob', 'done', 2000, 'LATER', 0.6, 0, 1, 1), "
+            + "('com.mail', 'Mail', 'Invoice', 'due friday', 3000, 'NOW', 0.9, 1, 0, 0)");
+        old.execSQL("INSERT INTO profiles (server_id, name, rules_json, is_active, created_at, synced) "
+            + "VALUES (5, 'Default', '{}', 1, 42, 1)");
+        old.execSQL("INSERT INTO sync_queue (operation, entity_type, entity_id, status, created_at, retry_count) "
+            + "VALUES ('UPDATE', 'profile', 1, 'PENDING', 7, 0)");
+        old.execSQL("INSERT INTO user (device_id, access_token, is_pro, created_at) "
+            + "VALUES ('device', 'token', 0, 1)");
+        helper.close();
+
+        AppDatabase database = Room.databaseBuilder(context, AppDatabase.class, DB_NAME)
+            .addMigrations(Migrations.ALL)
+            .allowMainThreadQueries()
+            .build();
+        try {
+            UserEntity user = database.userDao().getUser();
+            assertNotNull(user);
+            assertEquals("token", user.accessToken);
+            assertNotNull(user.installId);
+
+            assertEquals(2, database.notificationDao().getUnsyncedCount());
+            assertEquals(1, database.syncQueueDao().getPendingCount());
+            assertEquals(42, database.profileDao().getProfileById(1).updatedAt);
+
+            // Existing history is in the rebuilt FTS index
+            List<NotificationSearchResult> results = database.notificationSearchDao().search("lunch*", 10);
+            assertEquals(1, results.size());
+            assertEquals("Alice", results.get(0).notification.title);
+
+            // Counters seeded from unread rows
+            assertEquals(1, count(database, "SELECT unread_count FROM app_counters "
+                + "WHERE app_package = 'com.chat' AND action = 'LATER'"));
+            assertEquals(2, count(database, "SELECT SUM(unread_count) FROM lane_counters"));
+        } finally {
+            database.close();
+        }
+    }
+
+    private static int count(AppDatabase database, String sql) {
+        try (Cursor cursor = database.getOpenHelper().getReadableDatabase().query(sql)) {
+            cursor.moveToFirst();
+            return cursor.getInt(0);
+        }
+    }
+
+    /**
+     * The schema Room generated for the baseline entities
+     */
+    private static final class VersionOneCallback extends SupportSQLiteOpenHelper.Callback {
+        VersionOneCallback() {
+            super(1);
+        }
+
+        @Override
+        public void onCreate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `notifications` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                + "`app_package` TEXT, `app_name` TEXT, `title` TEXT, `text` TEXT, `topic` TEXT, "
+                + "`received_at` INTEGER NOT NULL, `action` TEXT, `confidence` REAL NOT NULL, "
+                + "`is_vip` INTEGER NOT NULL, `synced` INTEGER NOT NULL, `dismissed` INTEGER NOT NULL)");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `profiles` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                + "`server_id` INTEGER, `name` TEXT, `quiet_hours_start` TEXT, `quiet_hours_end` TEXT, "
+                + "`rules_json` TEXT, `is_active` INTEGER NOT NULL, `created_at` INTEGER NOT NULL, "
+                + "`synced` INTEGER NOT NULL)");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `vips` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                + "`server_id` INTEGER, `app_package` TEXT, `identifier` TEXT, `display_name` TEXT, "
+                + "`priority` INTEGER NOT NULL, `bypass_quiet_hours` INTEGER NOT NULL, "
+                + "`created_at` INTEGER NOT NULL, `synced` INTEGER NOT NULL)");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `sync_queue` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                + "`operation` TEXT, `entity_type` TEXT, `entity_id` INTEGER NOT NULL, `data_json` TEXT, "
+                + "`status` TEXT, `created_at` INTEGER NOT NULL, `retry_count` INTEGER NOT NULL)");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `user` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                + "`server_id` INTEGER, `email` TEXT, `device_id` TEXT, `access_token` TEXT, "
+                + "`is_pro` INTEGER NOT NULL, `created_at` INTEGER NOT NULL, `last_sync` INTEGER)");
+        }
+
+        @Override
+        public void onUpgrade(@NonNull SupportSQLiteDatabase db, int oldVersion, int newVersion) {
+        }
+    }
+}
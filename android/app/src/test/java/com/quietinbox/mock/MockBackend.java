@@ -0,0 +1,415 @@
+package com.quietinbox.mock;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.quietinbox.models.BatchResponse;
+import com.quietinbox.models.DeferralRecommendation;
+import com.quietinbox.models.HealthResponse;
+import com.quietinbox.models.Profile;
+import com.quietinbox.models.SyncPullResponse;
+import com.quietinbox.models.SyncResponse;
+import com.quietinbox.models.TokenResponse;
+import com.quietinbox.models.UpgradeResponse;
+import com.quietinbox.models.User;
+import com.quietinbox.models.VIP;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stateful stand-in for the QuietInbox API
+ * Mirrors the server's behaviour for one user: batch upserts with per-item results,
+ * an append-only change log behind keyset pull, idempotent pushes keyed by
+ * Idempotency-Key and local_id. Thread-safe; every request takes the instance lock.
+ */
+public class MockBackend {
+    private static final int PULL_DEFAULT_LIMIT = 100;
+    private static final int PULL_MAX_LIMIT = 500;
+    private static final int BATCH_MAX_ITEMS = 500;
+    private static final long MOCK_USER_ID = 1;
+
+    private final Gson gson = new Gson();
+
+    private final Map<Long, Profile> profiles = new LinkedHashMap<>();
+    private final Map<Long, VIP> vips = new LinkedHashMap<>();
+    private final List<Change> changes = new ArrayList<>();
+    private final Map<String, Integer> receipts = new HashMap<>();
+    private final Set<String> syncedLocalIds = new HashSet<>();
+    private long nextProfileId = 1;
+    private long nextVipId = 1;
+    private boolean isPro;
+
+    /**
+     * Status code and JSON body of one mock response
+     */
+    public static class Reply {
+        public final int code;
+        public final String json;
+
+        Reply(int code, String json) {
+            this.code = code;
+            this.json = json;
+        }
+    }
+
+    private static class Change {
+        final long seq;
+        final String entityType;
+        final long entityId;
+        final String op;
+        final Object data;
+
+        Change(long seq, String entityType, long entityId, String op, Object data) {
+            this.seq = seq;
+            this.entityType = entityType;
+            this.entityId = entityId;
+            this.op = op;
+            this.data = data;
+        }
+    }
+
+    /**
+     * Route one request; path is the URL path without the leading slash
+     */
+    public synchronized Reply handle(String method, String path, Map<String, String> query,
+                                     Map<String, String> headers, String body) {
+        String[] segments = path.split("/");
+
+        if (path.equals("health")) {
+            HealthResponse health = new HealthResponse();
+            health.status = "healthy";
+            health.database = "mock";
+            health.timestamp = now();
+            return ok(health);
+        }
+        if (path.equals("v1/auth/register") || path.equals("v1/auth/login")) {
+            TokenResponse token = new TokenResponse();
+            token.access_token = "mock-token";
+            token.token_type = "bearer";
+            token.user_id = MOCK_USER_ID;
+            return ok(token);
+        }
+        if (headers.get("authorization") == null) {
+            return error(401, "Missing authorization");
+        }
+
+        switch (method + " " + (segments.length > 1 ? segments[0] + "/" + segments[1] : path)) {
+            case "GET v1/user":
+                return ok(currentUser());
+            case "POST v1/user":
+                isPro = true;
+                UpgradeResponse upgrade = new UpgradeResponse();
+                upgrade.status = "success";
+                upgrade.is_pro = true;
+                return ok(upgrade);
+            case "GET v1/profile":
+                return ok(new ArrayList<>(profiles.values()));
+            case "POST v1/profile":
+                return segments.length > 2 && segments[2].equals("batch")
+                    ? batchProfiles(parse(body)) : ok(upsertProfile(0, parse(body).getAsJsonObject()));
+            case "PUT v1/profile":
+                return updateProfile(Long.parseLong(segments[2]), parse(body).getAsJsonObject());
+            case "GET v1/vip":
+                return ok(new ArrayList<>(vips.values()));
+            case "POST v1/vip":
+                return segments.length > 2 && segments[2].equals("batch")
+                    ? batchVIPs(parse(body)) : ok(upsertVIP(0, parse(body).getAsJsonObject()));
+            case "PUT v1/vip":
+                return updateVIP(Long.parseLong(segments[2]), parse(body).getAsJsonObject());
+            case "DELETE v1/vip":
+                return deleteVIP(Long.parseLong(segments[2]));
+            case "POST v1/sync":
+                return push(headers.get("idempotency-key"), parse(body).getAsJsonObject());
+            case "GET v1/sync":
+                return pull(query.get("cursor"), query.get("limit"));
+            case "GET v1/recommendations":
+                return ok(recommendations());
+            default:
+                return error(404, "Not found");
+        }
+    }
+
+    public synchronized int getProfileCount() {
+        return profiles.size();
+    }
+
+    public synchronized int getVIPCount() {
+        return vips.size();
+    }
+
+    public synchronized int getSyncedItemCount() {
+        return syncedLocalIds.size();
+    }
+
+    private User currentUser() {
+        User user = new User();
+        user.id = MOCK_USER_ID;
+        user.email = "mock@quietinbox.local";
+        user.device_id = "mock-device";
+        user.is_pro = isPro;
+        user.created_at = now();
+        return user;
+    }
+
+    private Reply batchProfiles(JsonElement body) {
+        JsonArray items = body.getAsJsonObject().getAsJsonArray("items");
+        if (items.size() > BATCH_MAX_ITEMS) {
+            return error(413, "At most " + BATCH_MAX_ITEMS + " items per batch");
+        }
+
+        BatchResponse response = new BatchResponse();
+        response.success = true;
+        response.results = new ArrayList<>();
+        for (JsonElement element : items) {
+            JsonObject item = element.getAsJsonObject();
+            long id = optLong(item, "id");
+            String clientId = optString(item, "client_id");
+            if (id != 0 && !profiles.containsKey(id)) {
+                response.results.add(result(clientId, null, "rejected", "Profile not found"));
+                continue;
+            }
+            if (id == 0 && !profiles.isEmpty() && !isPro) {
+                response.results.add(result(clientId, null, "rejected",
+                    "Multiple profiles require Pro subscription"));
+                continue;
+            }
+            Profile profile = upsertProfile(id, item);
+            response.results.add(result(clientId, profile.id, "ok", null));
+        }
+        return ok(response);
+    }
+
+    private Reply updateProfile(long id, JsonObject body) {
+        if (!profiles.containsKey(id)) {
+            return error(404, "Profile not found");
+        }
+        return ok(upsertProfile(id, body));
+    }
+
+    private Profile upsertProfile(long id, JsonObject item) {
+        Profile profile = id != 0 ? profiles.get(id) : new Profile();
+        if (id == 0) {
+            profile.id = nextProfileId++;
+            profile.user_id = MOCK_USER_ID;
+            profile.created_at = now();
+            profiles.put(profile.id, profile);
+        }
+        profile.name = optString(item, "name");
+        profile.quiet_hours_start = optString(item, "quiet_hours_start");
+        profile.quiet_hours_end = optString(item, "quiet_hours_end");
+        String rules = optString(item, "rules_json");
+        profile.rules_json = rules != null ? rules : "{}";
+        profile.is_active = item.has("is_active") && item.get("is_active").getAsBoolean();
+
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("id", profile.id);
+        snapshot.put("name", profile.name);
+        snapshot.put("quiet_hours_start", profile.quiet_hours_start);
+        snapshot.put("quiet_hours_end", profile.quiet_hours_end);
+        snapshot.put("rules_json", profile.rules_json);
+        snapshot.put("is_active", profile.is_active);
+        snapshot.put("updated_at", System.currentTimeMillis());
+        record("profile", profile.id, "upsert", snapshot);
+        return profile;
+    }
+
+    private Reply batchVIPs(JsonElement body) {
+        JsonObject request = body.getAsJsonObject();
+        JsonArray items = request.getAsJsonArray("items");
+        JsonArray deletedIds = request.has("deleted_ids") && request.get("deleted_ids").isJsonArray()
+            ? request.getAsJsonArray("deleted_ids") : new JsonArray();
+        if (items.size() + deletedIds.size() > BATCH_MAX_ITEMS) {
+            return error(413, "At most " + BATCH_MAX_ITEMS + " items per batch");
+        }
+
+        BatchResponse response = new BatchResponse();
+        response.success = true;
+        response.results = new ArrayList<>();
+        for (JsonElement element : items) {
+            JsonObject item = element.getAsJsonObject();
+            long id = optLong(item, "id");
+            String clientId = optString(item, "client_id");
+            if (id != 0 && !vips.containsKey(id)) {
+                response.results.add(result(clientId, null, "rejected", "VIP not found"));
+                continue;
+            }
+            VIP vip = upsertVIP(id, item);
+            response.results.add(result(clientId, vip.id, "ok", null));
+        }
+        // Deleting an already-deleted VIP is a no-op
+        for (JsonElement element : deletedIds) {
+            long id = element.getAsLong();
+            if (vips.remove(id) != null) {
+                record("vip", id, "delete", null);
+            }
+        }
+        return ok(response);
+    }
+
+    private Reply updateVIP(long id, JsonObject body) {
+        if (!vips.containsKey(id)) {
+            return error(404, "VIP not found");
+        }
+        return ok(upsertVIP(id, body));
+    }
+
+    private Reply deleteVIP(long id) {
+        if (vips.remove(id) == null) {
+            return error(404, "VIP not found");
+        }
+        record("vip", id, "delete", null);
+        Map<String, Object> result = new HashMap<>();
+        result.put("status", "deleted");
+        return ok(result);
+    }
+
+    private VIP upsertVIP(long id, JsonObject item) {
+        VIP vip = id != 0 ? vips.get(id) : new VIP();
+        if (id == 0) {
+            vip.id = nextVipId++;
+            vip.user_id = MOCK_USER_ID;
+            vip.created_at = now();
+            vips.put(vip.id, vip);
+        }
+        vip.app_package = optString(item, "app_package");
+        vip.identifier = optString(item, "identifier");
+        vip.priority = (int) optLong(item, "priority");
+        vip.bypass_quiet_hours = item.has("bypass_quiet_hours") && item.get("bypass_quiet_hours").getAsBoolean();
+
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("id", vip.id);
+        snapshot.put("app_package", vip.app_package);
+        snapshot.put("identifier", vip.identifier);
+        snapshot.put("priority", vip.priority);
+        snapshot.put("bypass_quiet_hours", vip.bypass_quiet_hours);
+        snapshot.put("updated_at", System.currentTimeMillis());
+        record("vip", vip.id, "upsert", snapshot);
+        return vip;
+    }
+
+    private Reply push(String idempotencyKey, JsonObject body) {
+        SyncResponse response = new SyncResponse();
+        response.success = true;
+        response.server_timestamp = now();
+
+        // Replayed chunk: return the original acknowledgement
+        if (idempotencyKey != null && receipts.containsKey(idempotencyKey)) {
+            response.synced_count = receipts.get(idempotencyKey);
+            return ok(response);
+        }
+
+        int synced = 0;
+        for (JsonElement element : body.getAsJsonArray("items")) {
+            if (syncedLocalIds.add(optString(element.getAsJsonObject(), "local_id"))) {
+                synced++;
+            }
+        }
+        if (idempotencyKey != null) {
+            receipts.put(idempotencyKey, synced);
+        }
+        response.synced_count = synced;
+        return ok(response);
+    }
+
+    private Reply pull(String cursor, String limitParam) {
+        long afterSeq;
+        try {
+            afterSeq = cursor != null ? Long.parseLong(cursor) : 0;
+        } catch (NumberFormatException e) {
+            return error(400, "Invalid cursor");
+        }
+        int limit = limitParam != null ? Integer.parseInt(limitParam) : PULL_DEFAULT_LIMIT;
+        limit = Math.max(1, Math.min(limit, PULL_MAX_LIMIT));
+
+        // Sequence numbers are list positions + 1, so the page starts at afterSeq
+        int from = (int) Math.min(afterSeq, changes.size());
+        int to = Math.min(from + limit, changes.size());
+
+        SyncPullResponse response = new SyncPullResponse();
+        response.success = true;
+        response.items = new ArrayList<>(to - from);
+        for (Change change : changes.subList(from, to)) {
+            Map<String, Object> item = new HashMap<>();
+            item.put("seq", change.seq);
+            item.put("entity_type", change.entityType);
+            item.put("entity_id", change.entityId);
+            item.put("op", change.op);
+            item.put("data", change.data);
+            response.items.add(item);
+        }
+        response.next_cursor = to > from ? String.valueOf(changes.get(to - 1).seq) : cursor;
+        response.has_more = to < changes.size();
+        response.server_timestamp = now();
+        return ok(response);
+    }
+
+    private List<DeferralRecommendation> recommendations() {
+        List<DeferralRecommendation> recommendations = new ArrayList<>();
+        recommendations.add(recommendation("Morning Digest", "08:00", "09:00", 0.85f));
+        recommendations.add(recommendation("Lunch Break", "12:30", "13:00", 0.78f));
+        recommendations.add(recommendation("Evening Review", "18:00", "18:30", 0.82f));
+        return recommendations;
+    }
+
+    private static DeferralRecommendation recommendation(String name, String start, String end, float confidence) {
+        DeferralRecommendation recommendation = new DeferralRecommendation();
+        recommendation.window_name = name;
+        recommendation.start_time = start;
+        recommendation.end_time = end;
+        recommendation.confidence = confidence;
+        recommendation.reason = "Mock recommendation";
+        return recommendation;
+    }
+
+    private void record(String entityType, long entityId, String op, Object data) {
+        changes.add(new Change(changes.size() + 1, entityType, entityId, op, data));
+    }
+
+    private static BatchResponse.Result result(String clientId, Long id, String status, String detail) {
+        BatchResponse.Result result = new BatchResponse.Result();
+        result.client_id = clientId;
+        result.id = id;
+        result.status = status;
+        result.detail = detail;
+        return result;
+    }
+
+    private Reply ok(Object body) {
+        return new Reply(200, gson.toJson(body));
+    }
+
+    private Reply error(int code, String detail) {
+        JsonObject body = new JsonObject();
+        body.addProperty("detail", detail);
+        return new Reply(code, body.toString());
+    }
+
+    private static JsonElement parse(String body) {
+        return JsonParser.parseString(body != null && !body.isEmpty() ? body : "{}");
+    }
+
+    private static String optString(JsonObject object, String name) {
+        JsonElement value = object.get(name);
+        return value != null && !value.isJsonNull() ? value.getAsString() : null;
+    }
+
+    private static long optLong(JsonObject object, String name) {
+        JsonElement value = object.get(name);
+        return value != null && !value.isJsonNull() ? value.getAsLong() : 0;
+    }
+
+    private static String now() {
+        return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss", Locale.US).format(new Date());
+    }
+}
@@ -0,0 +1,168 @@
+package com.quietinbox.mock;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.GzipSource;
+
+/**
+ * Serves MockWebServer requests from a MockBackend
+ * Optionally adds per-response latency, a response bandwidth cap, random 500s,
+ * and a burst of burstLength 503s every burstEvery requests, so sync retry and
+ * backoff paths run end to end without a server.
+ */
+public class MockBackendDispatcher extends Dispatcher {
+    private final MockBackend backend;
+    private final int burstEvery;
+    private final int burstLength;
+
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger faultCount = new AtomicInteger();
+    // Seeded so a failing run can be replayed
+    private final Random random = new Random(43);
+    private int burstRemaining;
+
+    private volatile long latencyMs;
+    private volatile long bytesPerSecond;
+    private volatile int errorRatePercent;
+
+    public MockBackendDispatcher(MockBackend backend) {
+        this(backend, 0, 0);
+    }
+
+    public MockBackendDispatcher(MockBackend backend, int burstEvery, int burstLength) {
+        this.backend = backend;
+        this.burstEvery = burstEvery;
+        this.burstLength = burstLength;
+    }
+
+    /**
+     * Delay before each response body, as a round trip to a remote server would
+     */
+    public void setLatency(long latencyMs) {
+        this.latencyMs = latencyMs;
+    }
+
+    /**
+     * Cap response bodies at this many bytes per second; 0 is unlimited
+     */
+    public void setBandwidth(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * Answer this share of requests with a 500 before they reach the backend
+     */
+    public void setErrorRate(int percent) {
+        this.errorRatePercent = percent;
+    }
+
+    public MockBackend getBackend() {
+        return backend;
+    }
+
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    public int getFaultCount() {
+        return faultCount.get();
+    }
+
+    @Override
+    public MockResponse dispatch(RecordedRequest request) {
+        int sequence = requestCount.incrementAndGet();
+        if (nextIsBurst(sequence)) {
+            faultCount.incrementAndGet();
+            return shape(json(503, "{\"detail\":\"Injected fault\"}"));
+        }
+        if (nextIsError()) {
+            faultCount.incrementAndGet();
+            return shape(json(500, "{\"detail\":\"Injected error\"}"));
+        }
+
+        HttpUrl url = request.getRequestUrl();
+        String path = url.encodedPath().substring(1);
+        MockBackend.Reply reply;
+        try {
+            reply = backend.handle(request.getMethod(), path, query(url), headers(request), body(request));
+        } catch (IOException e) {
+            return json(400, "{\"detail\":\"Unreadable body\"}");
+        }
+        return shape(json(reply.code, reply.json));
+    }
+
+    private MockResponse shape(MockResponse response) {
+        if (latencyMs > 0) {
+            response.setBodyDelay(latencyMs, TimeUnit.MILLISECONDS);
+        }
+        if (bytesPerSecond > 0) {
+            // Tenth-of-a-second slices, so small bodies are slowed too
+            response.throttleBody(Math.max(1, bytesPerSecond / 10), 100, TimeUnit.MILLISECONDS);
+        }
+        return response;
+    }
+
+    private synchronized boolean nextIsError() {
+        return errorRatePercent > 0 && random.nextInt(100) < errorRatePercent;
+    }
+
+    private synchronized boolean nextIsBurst(int sequence) {
+        if (burstRemaining > 0) {
+            burstRemaining--;
+            return true;
+        }
+        if (burstEvery > 0 && sequence % burstEvery == 0) {
+            burstRemaining = burstLength - 1;
+            return true;
+        }
+        return false;
+    }
+
+    private static MockResponse json(int code, String body) {
+        return new MockResponse()
+            .setResponseCode(code)
+            .setHeader("Content-Type", "application/json; charset=UTF-8")
+            .setHeader("X-Accept-Encoding", "gzip")
+            .setBody(body);
+    }
+
+    private static String body(RecordedRequest request) throws IOException {
+        Buffer buffer = request.getBody().clone();
+        if ("gzip".equalsIgnoreCase(request.getHeader("Content-Encoding"))) {
+            Buffer plain = new Buffer();
+            try (GzipSource gzip = new GzipSource(buffer)) {
+                while (gzip.read(plain, 8192) != -1) {
+                    // Drain the compressed body
+                }
+            }
+            buffer = plain;
+        }
+        return buffer.readUtf8();
+    }
+
+    private static Map<String, String> query(HttpUrl url) {
+        Map<String, String> query = new HashMap<>();
+        for (String name : url.queryParameterNames()) {
+            query.put(name, url.queryParameter(name));
+        }
+        return query;
+    }
+
+    private static Map<String, String> headers(RecordedRequest request) {
+        Map<String, String> headers = new HashMap<>();
+        for (String name : request.getHeaders().names()) {
+            headers.put(name.toLowerCase(), request.getHeader(name));
+        }
+        return headers;
+    }
+}
@@ -0,0 +1,73 @@
+package com.quietinbox.services;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.quietinbox.database.ProfileEntity;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+public class ClassifierSnapshotTest {
+
+    @Test
+    public void sameDayWindowIncludesStartExcludesEnd() {
+        NotificationClassifier.Snapshot rules = snapshot("09:00", "17:30");
+
+        assertFalse(rules.isInQuietHours(minutes(8, 59)));
+        assertTrue(rules.isInQuietHours(minutes(9, 0)));
+        assertTrue(rules.isInQuietHours(minutes(17, 29)));
+        assertFalse(rules.isInQuietHours(minutes(17, 30)));
+    }
+
+    @Test
+    public void overnightWindowWrapsPastMidnight() {
+        NotificationClassifier.Snapshot rules = snapshot("22:00", "07:00");
+
+        assertFalse(rules.isInQuietHours(minutes(21, 59)));
+        assertTrue(rules.isInQuietHours(minutes(22, 0)));
+        assertTrue(rules.isInQuietHours(minutes(23, 59)));
+        assertTrue(rules.isInQuietHours(minutes(0, 0)));
+        assertTrue(rules.isInQuietHours(minutes(6, 59)));
+        assertFalse(rules.isInQuietHours(minutes(7, 0)));
+        assertFalse(rules.isInQuietHours(minutes(12, 0)));
+    }
+
+    @Test
+    public void toleratesSpacesAroundFields() {
+        NotificationClassifier.Snapshot rules = snapshot(" 23 : 15 ", "1:05");
+
+        assertTrue(rules.isInQuietHours(minutes(23, 15)));
+        assertTrue(rules.isInQuietHours(minutes(1, 4)));
+        assertFalse(rules.isInQuietHours(minutes(1, 5)));
+    }
+
+    @Test
+    public void missingOrInvalidTimesDisableQuietHours() {
+        assertFalse(new NotificationClassifier.Snapshot(null, Collections.emptyList())
+            .isInQuietHours(minutes(23, 0)));
+        assertFalse(snapshot(null, "07:00").isInQuietHours(minutes(3, 0)));
+        assertFalse(snapshot("22:00", "seven").isInQuietHours(minutes(23, 0)));
+        assertFalse(snapshot("2200", "07:00").isInQuietHours(minutes(23, 0)));
+    }
+
+    @Test
+    public void equalStartAndEndIsAnEmptyWindow() {
+        NotificationClassifier.Snapshot rules = snapshot("08:00", "08:00");
+
+        assertFalse(rules.isInQuietHours(minutes(8, 0)));
+        assertFalse(rules.isInQuietHours(minutes(20, 0)));
+    }
+
+    private static NotificationClassifier.Snapshot snapshot(String start, String end) {
+        ProfileEntity profile = new ProfileEntity();
+        profile.quietHoursStart = start;
+        profile.quietHoursEnd = end;
+        return new NotificationClassifier.Snapshot(profile, Collections.emptyList());
+    }
+
+    private static int minutes(int hour, int minute) {
+        return hour * 60 + minute;
+    }
+}
@@ -0,0 +1,228 @@
+package com.quietinbox.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.app.Application;
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkCapabilities;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.quietinbox.database.AppDatabase;
+import com.quietinbox.database.NotificationEntity;
+import com.quietinbox.database.UserEntity;
+import com.quietinbox.database.VIPEntity;
+import com.quietinbox.mock.MockBackend;
+import com.quietinbox.mock.MockBackendDispatcher;
+import com.quietinbox.utils.ConfigLoader;
+import com.quietinbox.utils.Metrics;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLog;
+import org.robolectric.shadows.ShadowNetworkCapabilities;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import okhttp3.mockwebserver.MockWebServer;
+
+/**
+ * Sync load test: a 50k notification backlog and 1k new VIPs pushed through
+ * SyncManager to a MockWebServer that answers like the real API over a slow link,
+ * with random 500s and bursts of 503s. Runs against Robolectric's throwaway app
+ * storage, never a real install. The app's singletons live for the whole JVM,
+ * so this class keeps a single test.
+ * Opt-in, as it takes minutes: ./gradlew testDebugUnitTest -Pbenchmarks
+ * Sync time, requests, faults, rounds and peak heap are logged as loadtest.*
+ * metrics next to the http.* ones.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(application = Application.class, sdk = 33)
+public class SyncLoadTest {
+    private static final int NOTIFICATIONS = 50_000;
+    private static final int VIPS = 1000;
+    private static final int INSERT_BATCH = 1000;
+    private static final long DEADLINE_MS = 15 * 60_000;
+    private static final long ROUND_PAUSE_MS = 250;
+    private static final long HEAP_SAMPLE_MS = 20;
+
+    private static final long LATENCY_MS = 40;
+    private static final long BYTES_PER_SECOND = 256 * 1024;
+    private static final int ERROR_RATE_PERCENT = 2;
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor();
+    private MockWebServer server;
+    private MockBackendDispatcher dispatcher;
+    private Context context;
+
+    @Before
+    public void setUp() throws Exception {
+        assumeTrue("Load run is opt-in: -Pbenchmarks", Boolean.getBoolean("quietinbox.benchmarks"));
+        ShadowLog.stream = System.out;
+        context = ApplicationProvider.getApplicationContext();
+        connectUnmetered();
+
+        dispatcher = new MockBackendDispatcher(new MockBackend(), 97, 3);
+        dispatcher.setLatency(LATENCY_MS);
+        dispatcher.setBandwidth(BYTES_PER_SECOND);
+        dispatcher.setErrorRate(ERROR_RATE_PERCENT);
+        server = new MockWebServer();
+        server.setDispatcher(dispatcher);
+        server.start();
+
+        ConfigLoader config = ConfigLoader.getInstance(context);
+        config.override("backend.url", server.url("/").toString());
+        // Fast, persistent retries so injected faults delay items but never fail them
+        config.override("backend.retry.backoff.seconds", "1");
+        config.override("backend.retry.max.attempts", "20");
+
+        // Room refuses queries on the main thread, which Robolectric runs tests on
+        offMain(() -> {
+            seed(AppDatabase.getInstance(context));
+            return null;
+        });
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        worker.shutdownNow();
+        if (server != null) {
+            server.shutdown();
+        }
+    }
+
+    @Test
+    public void backlogSyncsCompletelyDespiteFaultBursts() throws Exception {
+        SyncManager syncManager = SyncManager.getInstance(context);
+        AppDatabase database = AppDatabase.getInstance(context);
+        Metrics metrics = Metrics.getInstance();
+        metrics.reset();
+        HeapSampler heap = new HeapSampler();
+        heap.start();
+
+        // Robolectric's SystemClock is frozen, so time the run on the wall clock
+        long start = System.currentTimeMillis();
+        long deadline = start + DEADLINE_MS;
+        int rounds = 0;
+        int pending = Integer.MAX_VALUE;
+        while (pending > 0 && System.currentTimeMillis() < deadline) {
+            rounds++;
+            pending = offMain(() -> {
+                try {
+                    syncManager.syncNow();
+                } catch (IOException e) {
+                    // Faults are expected; the next round resumes
+                }
+                return syncManager.getPendingCount();
+            });
+            if (pending > 0) {
+                Thread.sleep(ROUND_PAUSE_MS);
+            }
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        heap.interrupt();
+        heap.join();
+
+        MockBackend backend = dispatcher.getBackend();
+        metrics.add("loadtest.sync_ms", elapsed);
+        metrics.add("loadtest.requests", dispatcher.getRequestCount());
+        metrics.add("loadtest.faults", dispatcher.getFaultCount());
+        metrics.add("loadtest.rounds", rounds);
+        metrics.add("loadtest.peak_heap_mb", heap.peak / (1024 * 1024));
+        metrics.dump();
+
+        assertEquals(0, pending);
+        assertEquals(0, (int) offMain(() -> database.syncQueueDao().getFailedCount()));
+        assertEquals(NOTIFICATIONS, backend.getSyncedItemCount());
+        assertEquals(VIPS, backend.getVIPCount());
+        assertTrue(dispatcher.getFaultCount() > 0);
+    }
+
+    private void connectUnmetered() {
+        ConnectivityManager connectivity = context.getSystemService(ConnectivityManager.class);
+        NetworkCapabilities capabilities = ShadowNetworkCapabilities.newInstance();
+        shadowOf(capabilities).addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET);
+        shadowOf(capabilities).addCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED);
+        shadowOf(capabilities).addCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED);
+        shadowOf(connectivity).setNetworkCapabilities(connectivity.getActiveNetwork(), capabilities);
+    }
+
+    private void seed(AppDatabase database) {
+        UserEntity user = new UserEntity();
+        user.deviceId = "test-device";
+        user.accessToken = "test-token";
+        user.createdAt = System.currentTimeMillis();
+        database.userDao().insert(user);
+
+        long now = System.currentTimeMillis();
+        for (int offset = 0; offset < NOTIFICATIONS; offset += INSERT_BATCH) {
+            int size = Math.min(INSERT_BATCH, NOTIFICATIONS - offset);
+            List<NotificationEntity> batch = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                int n = offset + i;
+                NotificationEntity notification = new NotificationEntity();
+                notification.appPackage = "com.test.app" + (n % 40);
+                notification.appName = "Test " + (n % 40);
+                notification.title = "Notification " + n;
+                notification.text = "Load test body " + n + " with some representative words";
+                notification.receivedAt = now - (NOTIFICATIONS - n) * 1000L;
+                notification.lastSeen = notification.receivedAt;
+                notification.action = n % 3 == 0
+                    ? NotificationClassifier.ACTION_NOW : NotificationClassifier.ACTION_LATER;
+                notification.confidence = 0.5f + (n % 50) / 100f;
+                batch.add(notification);
+            }
+            database.notificationDao().insertAll(batch);
+        }
+
+        SyncOutbox outbox = SyncOutbox.getInstance(context);
+        for (int i = 0; i < VIPS; i++) {
+            VIPEntity vip = new VIPEntity();
+            vip.appPackage = "com.test.app" + (i % 40);
+            vip.identifier = "contact-" + i;
+            vip.displayName = "Contact " + i;
+            vip.priority = 1 + i % 5;
+            vip.createdAt = now;
+            outbox.saveVIP(vip);
+        }
+    }
+
+    private <T> T offMain(Callable<T> task) throws Exception {
+        return worker.submit(task).get();
+    }
+
+    private static final class HeapSampler extends Thread {
+        volatile long peak;
+
+        HeapSampler() {
+            super("heap-sampler");
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            Runtime runtime = Runtime.getRuntime();
+            while (!isInterrupted()) {
+                peak = Math.max(peak, runtime.totalMemory() - runtime.freeMemory());
+                try {
+                    Thread.sleep(HEAP_SAMPLE_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+}
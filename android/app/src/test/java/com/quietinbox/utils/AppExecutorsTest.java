@@ -0,0 +1,100 @@
+package com.quietinbox.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AppExecutorsTest {
+    private static final long TIMEOUT_MS = 5000;
+
+    private final List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+    @After
+    public void tearDown() throws Exception {
+        AppExecutors.shutdown(TIMEOUT_MS).get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void queuedTasksRunByPriorityThenSubmissionOrder() throws Exception {
+        AppExecutors executors = AppExecutors.getInstance();
+        CountDownLatch release = blockSingleThread(executors, AppExecutors.Pool.BACKGROUND);
+
+        CountDownLatch done = new CountDownLatch(5);
+        executors.execute(AppExecutors.Pool.BACKGROUND, AppExecutors.Priority.LOW, record("low", done));
+        executors.execute(AppExecutors.Pool.BACKGROUND, AppExecutors.Priority.NORMAL, record("normal-1", done));
+        executors.execute(AppExecutors.Pool.BACKGROUND, AppExecutors.Priority.HIGH, record("high-1", done));
+        executors.execute(AppExecutors.Pool.BACKGROUND, AppExecutors.Priority.NORMAL, record("normal-2", done));
+        executors.execute(AppExecutors.Pool.BACKGROUND, AppExecutors.Priority.HIGH, record("high-2", done));
+        release.countDown();
+
+        assertTrue(done.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertEquals(Arrays.asList("high-1", "high-2", "normal-1", "normal-2", "low"), order);
+    }
+
+    @Test
+    public void plainTasksRunAtNormalPriority() throws Exception {
+        AppExecutors executors = AppExecutors.getInstance();
+        CountDownLatch release = blockSingleThread(executors, AppExecutors.Pool.INGEST);
+
+        CountDownLatch done = new CountDownLatch(3);
+        executors.execute(AppExecutors.Pool.INGEST, AppExecutors.Priority.LOW, record("low", done));
+        executors.get(AppExecutors.Pool.INGEST).execute(record("plain", done));
+        executors.execute(AppExecutors.Pool.INGEST, AppExecutors.Priority.HIGH, record("high", done));
+        release.countDown();
+
+        assertTrue(done.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertEquals(Arrays.asList("high", "plain", "low"), order);
+    }
+
+    @Test
+    public void shutdownDrainsQueuedWorkAndReplacesPools() throws Exception {
+        AppExecutors executors = AppExecutors.getInstance();
+        AtomicInteger ran = new AtomicInteger();
+        for (int i = 0; i < 20; i++) {
+            executors.execute(AppExecutors.Pool.INGEST, AppExecutors.Priority.NORMAL, ran::incrementAndGet);
+        }
+
+        AppExecutors.shutdown(TIMEOUT_MS).get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertEquals(20, ran.get());
+
+        CountDownLatch done = new CountDownLatch(1);
+        AppExecutors.getInstance().execute(AppExecutors.Pool.INGEST, AppExecutors.Priority.NORMAL, done::countDown);
+        assertTrue(done.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Occupy a single-thread pool so everything submitted next queues behind it
+     */
+    private static CountDownLatch blockSingleThread(AppExecutors executors, AppExecutors.Pool pool)
+            throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executors.execute(pool, AppExecutors.Priority.HIGH, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        return release;
+    }
+
+    private Runnable record(String name, CountDownLatch done) {
+        return () -> {
+            order.add(name);
+            done.countDown();
+        };
+    }
+}
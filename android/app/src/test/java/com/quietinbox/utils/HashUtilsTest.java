@@ -0,0 +1,55 @@
+package com.quietinbox.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+public class HashUtilsTest {
+    private static final byte[] KEY = "0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] OTHER_KEY = "fedcba9876543210fedcba9876543210".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void fnv1a64IsStable() {
+        assertEquals(HashUtils.fnv1a64("com.app", "title", "text"),
+            HashUtils.fnv1a64("com.app", "title", "text"));
+    }
+
+    @Test
+    public void fnv1a64SeparatesFields() {
+        assertNotEquals(HashUtils.fnv1a64("ab", "c"), HashUtils.fnv1a64("a", "bc"));
+    }
+
+    @Test
+    public void fnv1a64TreatsNullLikeEmpty() {
+        assertEquals(HashUtils.fnv1a64("a", null), HashUtils.fnv1a64("a", ""));
+    }
+
+    @Test
+    public void hmacIsDeterministicHex() {
+        String hash = HashUtils.hmacSha256Hex(KEY, "com.app", "Alice");
+        assertEquals(hash, HashUtils.hmacSha256Hex(KEY, "com.app", "Alice"));
+        assertEquals(64, hash.length());
+        assertTrue(hash.matches("[0-9a-f]{64}"));
+    }
+
+    @Test
+    public void hmacDependsOnKey() {
+        assertNotEquals(HashUtils.hmacSha256Hex(KEY, "com.app", "Alice"),
+            HashUtils.hmacSha256Hex(OTHER_KEY, "com.app", "Alice"));
+    }
+
+    @Test
+    public void hmacSeparatesFields() {
+        assertNotEquals(HashUtils.hmacSha256Hex(KEY, "ab", "c"), HashUtils.hmacSha256Hex(KEY, "a", "bc"));
+    }
+
+    @Test
+    public void hmacTellsNullFromEmpty() {
+        assertNotEquals(HashUtils.hmacSha256Hex(KEY, "com.app", null),
+            HashUtils.hmacSha256Hex(KEY, "com.app", ""));
+    }
+}
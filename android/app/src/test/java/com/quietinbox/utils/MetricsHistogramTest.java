@@ -0,0 +1,105 @@
+package com.quietinbox.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+public class MetricsHistogramTest {
+
+    @Test
+    public void emptyHistogramReportsZero() {
+        Metrics.Histogram histogram = new Metrics.Histogram();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.percentile(50));
+        assertEquals(0, histogram.percentile(99));
+    }
+
+    @Test
+    public void percentileIsUpperBoundOfItsPowerOfTwoBucket() {
+        Metrics.Histogram histogram = new Metrics.Histogram();
+        for (long value = 1; value <= 100; value++) {
+            histogram.record(value);
+        }
+
+        // 1..63 fill buckets up to [32, 64), so rank 50 lands there
+        assertEquals(63, histogram.percentile(50));
+        assertEquals(63, histogram.percentile(63));
+        // Rank 64 is in [64, 128), capped at the observed max
+        assertEquals(100, histogram.percentile(64));
+        assertEquals(100, histogram.percentile(95));
+        assertEquals(100, histogram.percentile(100));
+        assertEquals(5050, histogram.getSum());
+        assertEquals(50.5, histogram.getMean(), 0.0);
+    }
+
+    @Test
+    public void singleValueIsCappedAtMax() {
+        Metrics.Histogram histogram = new Metrics.Histogram();
+        histogram.record(100);
+
+        assertEquals(100, histogram.percentile(50));
+        assertEquals(100, histogram.percentile(99));
+    }
+
+    @Test
+    public void lowestPercentileReportsFirstOccupiedBucket() {
+        Metrics.Histogram histogram = new Metrics.Histogram();
+        histogram.record(10);
+        histogram.record(1000);
+
+        assertEquals(15, histogram.percentile(0));
+        assertEquals(15, histogram.percentile(50));
+        assertEquals(1000, histogram.percentile(51));
+    }
+
+    @Test
+    public void zeroAndNegativeValuesShareTheFirstBucket() {
+        Metrics.Histogram histogram = new Metrics.Histogram();
+        histogram.record(0);
+        histogram.record(-5);
+        histogram.record(7);
+
+        assertEquals(0, histogram.percentile(50));
+        assertEquals(7, histogram.percentile(100));
+        assertEquals(7, histogram.getMax());
+    }
+
+    @Test
+    public void largestValuesLandInTheTopBucket() {
+        Metrics.Histogram histogram = new Metrics.Histogram();
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(1L << 61);
+
+        assertEquals((1L << 62) - 1, histogram.percentile(50));
+        assertEquals(Long.MAX_VALUE, histogram.percentile(100));
+    }
+
+    @Test
+    public void dumpWritesCountersThenHistogramsByName() {
+        Metrics metrics = Metrics.getInstance();
+        metrics.reset();
+        metrics.increment("b.counter");
+        metrics.add("a.counter", 3);
+        metrics.record("z.latency", 12);
+        metrics.record("y.latency", 40);
+
+        StringWriter out = new StringWriter();
+        PrintWriter writer = new PrintWriter(out);
+        metrics.dump(writer);
+        writer.flush();
+        metrics.reset();
+
+        String[] lines = out.toString().trim().split("\\R");
+        assertEquals(4, lines.length);
+        assertEquals("a.counter = 3", lines[0]);
+        assertEquals("b.counter = 1", lines[1]);
+        assertEquals("y.latency n=1 p50=40 p95=40 max=40", lines[2]);
+        assertTrue(lines[3].startsWith("z.latency n=1 "));
+    }
+}
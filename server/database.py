@@ -2,7 +2,7 @@
 Database configuration and session management
 """
 
-from sqlalchemy import create_engine
+from sqlalchemy import create_engine, inspect, text
 from sqlalchemy.ext.declarative import declarative_base
 from sqlalchemy.orm import sessionmaker
 import os
@@ -34,5 +34,36 @@ def get_db():
 
 def init_db():
     """Initialize database - create all tables"""
-    from models import User, Profile, VIP, NotificationSync, SyncQueue
+    from models import User, Profile, VIP, NotificationSync, SyncChange, SyncBatchReceipt, SyncQueue
+    upgrade_schema()
     Base.metadata.create_all(bind=engine)
+
+
+def upgrade_schema():
+    """
+    Bring tables created by an earlier release up to the current models
+    create_all only creates missing tables, it never alters existing ones.
+    Every step checks the live schema first, so this is safe on every startup.
+    """
+    inspector = inspect(engine)
+    tables = set(inspector.get_table_names())
+
+    with engine.begin() as conn:
+        # Last-writer-wins merge timestamps for profiles and VIPs
+        for table in ("profiles", "vips"):
+            if table in tables and not _has_column(inspector, table, "updated_at"):
+                conn.execute(text(f"ALTER TABLE {table} ADD COLUMN updated_at TIMESTAMP"))
+                conn.execute(text(f"UPDATE {table} SET updated_at = created_at"))
+
+        if "notification_syncs" in tables and not _has_column(inspector, "notification_syncs", "install_id"):
+            conn.execute(text("ALTER TABLE notification_syncs ADD COLUMN install_id VARCHAR"))
+
+        # Receipts were once unique on the key alone; they are short-lived, so recreate the table
+        if "sync_batch_receipts" in tables and any(
+                index["unique"] and index["column_names"] == ["idempotency_key"]
+                for index in inspector.get_indexes("sync_batch_receipts")):
+            conn.execute(text("DROP TABLE sync_batch_receipts"))
+
+
+def _has_column(inspector, table, column):
+    return any(info["name"] == column for info in inspector.get_columns(table))
@@ -3,21 +3,28 @@ QuietInbox Backend Server
 FastAPI-based REST API for notification sync, profiles, and recommendations
 """
 
-from fastapi import FastAPI, HTTPException, Depends, Header, status
+from fastapi import FastAPI, HTTPException, Depends, Header, Request, Response, status
 from fastapi.middleware.cors import CORSMiddleware
+from fastapi.middleware.gzip import GZipMiddleware
 from fastapi.responses import JSONResponse
+from fastapi.routing import APIRoute
+from sqlalchemy import func
 from sqlalchemy.orm import Session
 from typing import Optional, List
+import hashlib
+import json
 import logging
+import zlib
 from datetime import datetime, timedelta
 import jwt
 from passlib.context import CryptContext
 
 from database import get_db, init_db
-from models import User, Profile, VIP, NotificationSync, SyncQueue
+from models import User, Profile, VIP, NotificationSync, SyncChange, SyncBatchReceipt, SyncQueue
 from schemas import (
     UserCreate, UserResponse, ProfileCreate, ProfileResponse,
-    VIPCreate, VIPResponse, SyncPushRequest, SyncPushResponse,
+    VIPCreate, VIPResponse, ProfileBatchRequest, VIPBatchRequest,
+    BatchItemResult, BatchResponse, SyncPushRequest, SyncPushResponse, SyncPullResponse,
     DeferralRecommendation, TokenResponse
 )
 
@@ -25,6 +32,49 @@ from schemas import (
 logging.basicConfig(level=logging.INFO)
 logger = logging.getLogger(__name__)
 
+# Largest request body accepted after gunzipping; a full push chunk is well under 1 MiB
+MAX_DECOMPRESSED_BODY = 8 * 1024 * 1024
+
+
+class GzipRequest(Request):
+    """Request whose body is transparently gunzipped when sent with Content-Encoding: gzip"""
+
+    async def body(self) -> bytes:
+        if not hasattr(self, "_body"):
+            body = await super().body()
+            if "gzip" in self.headers.getlist("Content-Encoding"):
+                body = gunzip_capped(body, MAX_DECOMPRESSED_BODY)
+            self._body = body
+        return self._body
+
+
+def gunzip_capped(body: bytes, max_size: int) -> bytes:
+    """Gunzip a request body, stopping at max_size so a small gzip bomb cannot exhaust memory"""
+    decompressor = zlib.decompressobj(16 + zlib.MAX_WBITS)
+    try:
+        data = decompressor.decompress(body, max_size + 1)
+    except zlib.error:
+        raise HTTPException(status_code=400, detail="Invalid gzip request body")
+    if len(data) > max_size or decompressor.unconsumed_tail:
+        raise HTTPException(status_code=413, detail="Decompressed request body too large")
+    if not decompressor.eof or decompressor.unused_data:
+        raise HTTPException(status_code=400, detail="Invalid gzip request body")
+    return data
+
+
+class GzipRoute(APIRoute):
+    """Route class that accepts gzip-compressed request bodies"""
+
+    def get_route_handler(self):
+        original_route_handler = super().get_route_handler()
+
+        async def custom_route_handler(request: Request) -> Response:
+            request = GzipRequest(request.scope, request.receive)
+            return await original_route_handler(request)
+
+        return custom_route_handler
+
+
 # Initialize FastAPI app
 app = FastAPI(
     title="QuietInbox API",
@@ -41,6 +91,20 @@ app.add_middleware(
     allow_headers=["*"],
 )
 
+# Compress larger responses for clients that send Accept-Encoding: gzip
+app.add_middleware(GZipMiddleware, minimum_size=1024)
+
+# All routes accept gzip request bodies
+app.router.route_class = GzipRoute
+
+
+@app.middleware("http")
+async def advertise_request_encoding(request: Request, call_next):
+    """Tell clients they may gzip request bodies"""
+    response = await call_next(request)
+    response.headers["X-Accept-Encoding"] = "gzip"
+    return response
+
 # Security
 SECRET_KEY = "your-secret-key-change-in-production"  # Use environment variable in production
 ALGORITHM = "HS256"
@@ -48,6 +112,20 @@ ACCESS_TOKEN_EXPIRE_MINUTES = 10080  # 7 days
 
 pwd_context = CryptContext(schemes=["bcrypt"], deprecated="auto")
 
+# Pull sync page size bounds
+PULL_DEFAULT_LIMIT = 100
+PULL_MAX_LIMIT = 500
+
+# Maximum entities accepted by one batch request
+BATCH_MAX_ITEMS = 500
+
+# How long a push receipt can replay its acknowledgement; client retries land well within it
+RECEIPT_TTL = timedelta(days=7)
+
+# Push item types whose record is replaced when the same local_id is pushed again;
+# histogram buckets are recounted over their whole hour on every push
+REPUSHABLE_SYNC_TYPES = {"notification", "notification_meta", "notification_histogram"}
+
 
 def create_access_token(data: dict, expires_delta: Optional[timedelta] = None):
     """Create JWT access token"""
@@ -61,6 +139,85 @@ def create_access_token(data: dict, expires_delta: Optional[timedelta] = None):
     return encoded_jwt
 
 
+def to_epoch_millis(value: Optional[datetime]) -> Optional[int]:
+    """Convert a naive UTC datetime to epoch milliseconds"""
+    if value is None:
+        return None
+    return int((value - datetime(1970, 1, 1)).total_seconds() * 1000)
+
+
+def profile_snapshot(profile: Profile) -> dict:
+    """Profile fields carried in the sync change log"""
+    return {
+        "id": profile.id,
+        "name": profile.name,
+        "quiet_hours_start": profile.quiet_hours_start,
+        "quiet_hours_end": profile.quiet_hours_end,
+        "rules_json": profile.rules_json,
+        "is_active": profile.is_active,
+        "updated_at": to_epoch_millis(profile.updated_at)
+    }
+
+
+def vip_snapshot(vip: VIP) -> dict:
+    """VIP fields carried in the sync change log"""
+    return {
+        "id": vip.id,
+        "app_package": vip.app_package,
+        "identifier": vip.identifier,
+        "priority": vip.priority,
+        "bypass_quiet_hours": vip.bypass_quiet_hours,
+        "updated_at": to_epoch_millis(vip.updated_at)
+    }
+
+
+def record_change(db: Session, user_id: int, entity_type: str, entity_id: int,
+                  operation: str, data: Optional[dict] = None):
+    """Append a profile/VIP mutation to the change log in the caller's transaction"""
+    db.add(SyncChange(
+        user_id=user_id,
+        entity_type=entity_type,
+        entity_id=entity_id,
+        operation=operation,
+        data_json=json.dumps(data) if data is not None else None
+    ))
+
+
+def entity_etag(db: Session, user_id: int, entity_type: str) -> str:
+    """ETag for a user's profile or VIP list: every mutation appends to the change log,
+    so the newest change ID is a version that moves whenever the list does"""
+    version = db.query(func.max(SyncChange.id)).filter(
+        SyncChange.user_id == user_id,
+        SyncChange.entity_type == entity_type
+    ).scalar() or 0
+    return f'"{entity_type}-{user_id}-{version}"'
+
+
+def content_etag(payload) -> str:
+    """ETag for a computed response without a stored version"""
+    body = json.dumps(payload, sort_keys=True, separators=(",", ":"), default=str)
+    return '"' + hashlib.sha1(body.encode("utf-8")).hexdigest()[:20] + '"'
+
+
+def etag_matches(request: Request, etag: str) -> bool:
+    """True when the client's If-None-Match already names this version"""
+    header = request.headers.get("If-None-Match")
+    if not header:
+        return False
+    candidates = [tag.strip() for tag in header.split(",")]
+    return "*" in candidates or etag in candidates or f"W/{etag}" in candidates
+
+
+def conditional(request: Request, response: Response, etag: str) -> Optional[Response]:
+    """Return a bodiless 304 if the client is current, otherwise tag the response.
+    no-cache lets clients store the body but makes them revalidate on every use."""
+    headers = {"ETag": etag, "Cache-Control": "private, no-cache"}
+    if etag_matches(request, etag):
+        return Response(status_code=304, headers=headers)
+    response.headers.update(headers)
+    return None
+
+
 def verify_token(authorization: Optional[str] = Header(None), db: Session = Depends(get_db)):
     """Verify JWT token and return user"""
     if not authorization:
@@ -165,6 +322,9 @@ async def register_user(user_data: UserCreate, db: Session = Depends(get_db)):
             is_active=True
         )
         db.add(default_profile)
+        db.flush()
+        record_change(db, new_user.id, "profile", default_profile.id, "upsert",
+                      profile_snapshot(default_profile))
         db.commit()
 
         # Generate token
@@ -208,8 +368,17 @@ async def login_user(email: str, password: str, db: Session = Depends(get_db)):
 # ============================================
 
 @app.get("/v1/profile", response_model=List[ProfileResponse])
-async def get_profiles(current_user: User = Depends(verify_token), db: Session = Depends(get_db)):
-    """Get all profiles for current user"""
+async def get_profiles(
+    request: Request,
+    response: Response,
+    current_user: User = Depends(verify_token),
+    db: Session = Depends(get_db)
+):
+    """Get all profiles for current user; 304 when If-None-Match is current"""
+    not_modified = conditional(request, response, entity_etag(db, current_user.id, "profile"))
+    if not_modified:
+        return not_modified
+
     profiles = db.query(Profile).filter(Profile.user_id == current_user.id).all()
     return profiles
 
@@ -240,12 +409,76 @@ async def create_profile(
     )
 
     db.add(new_profile)
+    db.flush()
+    record_change(db, current_user.id, "profile", new_profile.id, "upsert",
+                  profile_snapshot(new_profile))
     db.commit()
     db.refresh(new_profile)
 
     return new_profile
 
 
+@app.post("/v1/profile/batch", response_model=BatchResponse)
+async def batch_profiles(
+    batch: ProfileBatchRequest,
+    current_user: User = Depends(verify_token),
+    db: Session = Depends(get_db)
+):
+    """Create or update many profiles in one transaction"""
+    if len(batch.items) > BATCH_MAX_ITEMS:
+        raise HTTPException(status_code=413, detail=f"At most {BATCH_MAX_ITEMS} items per batch")
+
+    try:
+        ids = [item.id for item in batch.items if item.id]
+        existing = {
+            profile.id: profile for profile in db.query(Profile).filter(
+                Profile.user_id == current_user.id,
+                Profile.id.in_(ids)
+            )
+        } if ids else {}
+        profile_count = db.query(Profile).filter(Profile.user_id == current_user.id).count()
+
+        results = []
+        touched = []
+        for item in batch.items:
+            profile = existing.get(item.id) if item.id else None
+            if item.id and profile is None:
+                results.append(BatchItemResult(client_id=item.client_id, status="rejected",
+                                               detail="Profile not found"))
+                continue
+
+            if profile is None:
+                # Multiple profiles require Pro
+                if profile_count >= 1 and not current_user.is_pro:
+                    results.append(BatchItemResult(client_id=item.client_id, status="rejected",
+                                                   detail="Multiple profiles require Pro subscription"))
+                    continue
+                profile = Profile(user_id=current_user.id)
+                db.add(profile)
+                profile_count += 1
+
+            profile.name = item.name
+            profile.quiet_hours_start = item.quiet_hours_start
+            profile.quiet_hours_end = item.quiet_hours_end
+            profile.rules_json = item.rules_json or "{}"
+            profile.is_active = item.is_active
+            touched.append((item.client_id, profile))
+
+        db.flush()
+        for client_id, profile in touched:
+            record_change(db, current_user.id, "profile", profile.id, "upsert",
+                          profile_snapshot(profile))
+            results.append(BatchItemResult(client_id=client_id, id=profile.id, status="ok"))
+        db.commit()
+
+        return BatchResponse(success=True, results=results)
+
+    except Exception as e:
+        logger.error(f"Profile batch error: {str(e)}")
+        db.rollback()
+        raise HTTPException(status_code=500, detail="Profile batch failed")
+
+
 @app.put("/v1/profile/{profile_id}", response_model=ProfileResponse)
 async def update_profile(
     profile_id: int,
@@ -268,6 +501,9 @@ async def update_profile(
     profile.rules_json = profile_data.rules_json
     profile.is_active = profile_data.is_active
 
+    db.flush()
+    record_change(db, current_user.id, "profile", profile.id, "upsert",
+                  profile_snapshot(profile))
     db.commit()
     db.refresh(profile)
 
@@ -279,8 +515,17 @@ async def update_profile(
 # ============================================
 
 @app.get("/v1/vip", response_model=List[VIPResponse])
-async def get_vips(current_user: User = Depends(verify_token), db: Session = Depends(get_db)):
-    """Get all VIPs for current user"""
+async def get_vips(
+    request: Request,
+    response: Response,
+    current_user: User = Depends(verify_token),
+    db: Session = Depends(get_db)
+):
+    """Get all VIPs for current user; 304 when If-None-Match is current"""
+    not_modified = conditional(request, response, entity_etag(db, current_user.id, "vip"))
+    if not_modified:
+        return not_modified
+
     vips = db.query(VIP).filter(VIP.user_id == current_user.id).all()
     return vips
 
@@ -301,12 +546,102 @@ async def create_vip(
     )
 
     db.add(new_vip)
+    db.flush()
+    record_change(db, current_user.id, "vip", new_vip.id, "upsert", vip_snapshot(new_vip))
     db.commit()
     db.refresh(new_vip)
 
     return new_vip
 
 
+@app.post("/v1/vip/batch", response_model=BatchResponse)
+async def batch_vips(
+    batch: VIPBatchRequest,
+    current_user: User = Depends(verify_token),
+    db: Session = Depends(get_db)
+):
+    """Create, update and delete many VIP contacts in one transaction"""
+    if len(batch.items) + len(batch.deleted_ids) > BATCH_MAX_ITEMS:
+        raise HTTPException(status_code=413, detail=f"At most {BATCH_MAX_ITEMS} items per batch")
+
+    try:
+        ids = [item.id for item in batch.items if item.id] + list(batch.deleted_ids)
+        existing = {
+            vip.id: vip for vip in db.query(VIP).filter(
+                VIP.user_id == current_user.id,
+                VIP.id.in_(ids)
+            )
+        } if ids else {}
+
+        results = []
+        touched = []
+        for item in batch.items:
+            vip = existing.get(item.id) if item.id else None
+            if item.id and vip is None:
+                results.append(BatchItemResult(client_id=item.client_id, status="rejected",
+                                               detail="VIP not found"))
+                continue
+
+            if vip is None:
+                vip = VIP(user_id=current_user.id)
+                db.add(vip)
+
+            vip.app_package = item.app_package
+            vip.identifier = item.identifier
+            vip.priority = item.priority
+            vip.bypass_quiet_hours = item.bypass_quiet_hours
+            touched.append((item.client_id, vip))
+
+        # Deleting an already-deleted VIP is a no-op
+        for vip_id in batch.deleted_ids:
+            vip = existing.get(vip_id)
+            if vip is not None:
+                record_change(db, current_user.id, "vip", vip.id, "delete")
+                db.delete(vip)
+
+        db.flush()
+        for client_id, vip in touched:
+            record_change(db, current_user.id, "vip", vip.id, "upsert", vip_snapshot(vip))
+            results.append(BatchItemResult(client_id=client_id, id=vip.id, status="ok"))
+        db.commit()
+
+        return BatchResponse(success=True, results=results)
+
+    except Exception as e:
+        logger.error(f"VIP batch error: {str(e)}")
+        db.rollback()
+        raise HTTPException(status_code=500, detail="VIP batch failed")
+
+
+@app.put("/v1/vip/{vip_id}", response_model=VIPResponse)
+async def update_vip(
+    vip_id: int,
+    vip_data: VIPCreate,
+    current_user: User = Depends(verify_token),
+    db: Session = Depends(get_db)
+):
+    """Update a VIP contact"""
+    vip = db.query(VIP).filter(
+        VIP.id == vip_id,
+        VIP.user_id == current_user.id
+    ).first()
+
+    if not vip:
+        raise HTTPException(status_code=404, detail="VIP not found")
+
+    vip.app_package = vip_data.app_package
+    vip.identifier = vip_data.identifier
+    vip.priority = vip_data.priority
+    vip.bypass_quiet_hours = vip_data.bypass_quiet_hours
+
+    db.flush()
+    record_change(db, current_user.id, "vip", vip.id, "upsert", vip_snapshot(vip))
+    db.commit()
+    db.refresh(vip)
+
+    return vip
+
+
 @app.delete("/v1/vip/{vip_id}")
 async def delete_vip(
     vip_id: int,
@@ -322,6 +657,7 @@ async def delete_vip(
     if not vip:
         raise HTTPException(status_code=404, detail="VIP not found")
 
+    record_change(db, current_user.id, "vip", vip.id, "delete")
     db.delete(vip)
     db.commit()
 
@@ -335,35 +671,78 @@ async def delete_vip(
 @app.post("/v1/sync/push", response_model=SyncPushResponse)
 async def sync_push(
     sync_data: SyncPushRequest,
+    idempotency_key: Optional[str] = Header(None),
     current_user: User = Depends(verify_token),
     db: Session = Depends(get_db)
 ):
     """Push local changes to server for sync"""
     try:
-        synced_count = 0
+        # Replayed chunk: return the original acknowledgement
+        receipt_cutoff = datetime.utcnow() - RECEIPT_TTL
+        if idempotency_key:
+            receipt = db.query(SyncBatchReceipt).filter(
+                SyncBatchReceipt.user_id == current_user.id,
+                SyncBatchReceipt.idempotency_key == idempotency_key,
+                SyncBatchReceipt.created_at >= receipt_cutoff
+            ).first()
+            if receipt:
+                return SyncPushResponse(
+                    success=True,
+                    synced_count=receipt.synced_count,
+                    server_timestamp=datetime.utcnow().isoformat()
+                )
 
-        # Process each sync item
-        for item in sync_data.items:
-            # Check if already synced
-            existing = db.query(NotificationSync).filter(
+        # Look up already-synced items for the whole chunk in one query; local IDs are
+        # only unique within one account's install, so scope the lookup to both
+        local_ids = [item.get("local_id") for item in sync_data.items]
+        existing = {
+            row.local_id: row for row in db.query(NotificationSync).filter(
+                NotificationSync.user_id == current_user.id,
                 NotificationSync.device_id == current_user.device_id,
-                NotificationSync.local_id == item.get("local_id")
-            ).first()
+                NotificationSync.install_id == sync_data.install_id,
+                NotificationSync.local_id.in_(local_ids)
+            )
+        }
 
-            if not existing:
-                sync_item = NotificationSync(
-                    user_id=current_user.id,
-                    device_id=current_user.device_id,
-                    local_id=item.get("local_id"),
-                    sync_type=item.get("type"),
-                    data_json=str(item.get("data", {})),
-                    synced_at=datetime.utcnow()
-                )
-                db.add(sync_item)
-                synced_count += 1
+        synced_count = 0
+        now = datetime.utcnow()
+        for item in sync_data.items:
+            local_id = item.get("local_id")
+            row = existing.get(local_id)
+            if row is not None:
+                # A notification re-pushed after folding in repeats, or a recounted bucket, replaces its record
+                if item.get("type") in REPUSHABLE_SYNC_TYPES:
+                    row.data_json = str(item.get("data", {}))
+                    row.synced_at = now
+                    synced_count += 1
+                continue
+
+            existing[local_id] = NotificationSync(
+                user_id=current_user.id,
+                device_id=current_user.device_id,
+                install_id=sync_data.install_id,
+                local_id=local_id,
+                sync_type=item.get("type"),
+                data_json=str(item.get("data", {})),
+                synced_at=now
+            )
+            db.add(existing[local_id])
+            synced_count += 1
+
+        if idempotency_key:
+            # Expired receipts no longer replay; drop them so their keys can be stored again
+            db.query(SyncBatchReceipt).filter(
+                SyncBatchReceipt.user_id == current_user.id,
+                SyncBatchReceipt.created_at < receipt_cutoff
+            ).delete(synchronize_session=False)
+            db.add(SyncBatchReceipt(
+                user_id=current_user.id,
+                idempotency_key=idempotency_key,
+                synced_count=synced_count
+            ))
 
         # Update user's last sync time
-        current_user.last_sync = datetime.utcnow()
+        current_user.last_sync = now
 
         db.commit()
 
@@ -381,37 +760,48 @@ async def sync_push(
         raise HTTPException(status_code=500, detail="Sync failed")
 
 
-@app.get("/v1/sync/pull")
+@app.get("/v1/sync/pull", response_model=SyncPullResponse)
 async def sync_pull(
-    since: Optional[str] = None,
+    cursor: Optional[str] = None,
+    limit: int = PULL_DEFAULT_LIMIT,
     current_user: User = Depends(verify_token),
     db: Session = Depends(get_db)
 ):
-    """Pull server changes since last sync"""
+    """Pull one page of profile and VIP changes after an opaque cursor"""
     try:
-        query = db.query(NotificationSync).filter(
-            NotificationSync.user_id == current_user.id
-        )
+        after_id = int(cursor) if cursor else 0
+    except ValueError:
+        raise HTTPException(status_code=400, detail="Invalid cursor")
+
+    limit = max(1, min(limit, PULL_MAX_LIMIT))
 
-        if since:
-            since_dt = datetime.fromisoformat(since)
-            query = query.filter(NotificationSync.synced_at > since_dt)
+    try:
+        # Keyset page on the monotonic change ID; fetch one extra row to detect more pages
+        changes = db.query(SyncChange).filter(
+            SyncChange.user_id == current_user.id,
+            SyncChange.id > after_id
+        ).order_by(SyncChange.id.asc()).limit(limit + 1).all()
 
-        sync_items = query.order_by(NotificationSync.synced_at.desc()).limit(100).all()
+        has_more = len(changes) > limit
+        changes = changes[:limit]
+        next_cursor = str(changes[-1].id) if changes else (cursor or None)
 
-        return {
-            "success": True,
-            "items": [
+        return SyncPullResponse(
+            success=True,
+            items=[
                 {
-                    "id": item.id,
-                    "type": item.sync_type,
-                    "data": item.data_json,
-                    "synced_at": item.synced_at.isoformat()
+                    "seq": change.id,
+                    "entity_type": change.entity_type,
+                    "entity_id": change.entity_id,
+                    "op": change.operation,
+                    "data": json.loads(change.data_json) if change.data_json else None
                 }
-                for item in sync_items
+                for change in changes
             ],
-            "server_timestamp": datetime.utcnow().isoformat()
-        }
+            next_cursor=next_cursor,
+            has_more=has_more,
+            server_timestamp=datetime.utcnow().isoformat()
+        )
 
     except Exception as e:
         logger.error(f"Pull error: {str(e)}")
@@ -424,6 +814,8 @@ async def sync_pull(
 
 @app.get("/v1/recommendations/deferral-windows", response_model=List[DeferralRecommendation])
 async def get_deferral_recommendations(
+    request: Request,
+    response: Response,
     current_user: User = Depends(verify_token),
     db: Session = Depends(get_db)
 ):
@@ -455,6 +847,14 @@ async def get_deferral_recommendations(
         )
     ]
 
+    # Computed per request, so the version is a hash of the result
+    not_modified = conditional(
+        request, response,
+        content_etag([recommendation.model_dump() for recommendation in recommendations])
+    )
+    if not_modified:
+        return not_modified
+
     return recommendations
 
 
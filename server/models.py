@@ -2,7 +2,7 @@
 SQLAlchemy Database Models
 """
 
-from sqlalchemy import Column, Integer, String, Boolean, DateTime, Text, ForeignKey, Float
+from sqlalchemy import Column, Integer, String, Boolean, DateTime, Text, ForeignKey, Float, Index
 from sqlalchemy.orm import relationship
 from datetime import datetime
 from database import Base
@@ -38,6 +38,7 @@ class Profile(Base):
     rules_json = Column(Text, nullable=True)           # JSON string of rules
     is_active = Column(Boolean, default=False)
     created_at = Column(DateTime, default=datetime.utcnow)
+    updated_at = Column(DateTime, default=datetime.utcnow, onupdate=datetime.utcnow)
 
     # Relationships
     user = relationship("User", back_populates="profiles")
@@ -54,6 +55,7 @@ class VIP(Base):
     priority = Column(Integer, default=1)        # 1-5 priority level
     bypass_quiet_hours = Column(Boolean, default=True)
     created_at = Column(DateTime, default=datetime.utcnow)
+    updated_at = Column(DateTime, default=datetime.utcnow, onupdate=datetime.utcnow)
 
     # Relationships
     user = relationship("User", back_populates="vips")
@@ -66,6 +68,7 @@ class NotificationSync(Base):
     id = Column(Integer, primary_key=True, index=True)
     user_id = Column(Integer, ForeignKey("users.id"), nullable=False)
     device_id = Column(String, nullable=False)
+    install_id = Column(String, nullable=True)    # Client database the local ID belongs to
     local_id = Column(String, nullable=False)     # Local notification ID
     sync_type = Column(String, nullable=False)     # profile, vip, notification, etc.
     data_json = Column(Text, nullable=False)       # JSON data
@@ -75,6 +78,35 @@ class NotificationSync(Base):
     user = relationship("User", back_populates="syncs")
 
 
+class SyncChange(Base):
+    """Append-only change log of profile and VIP mutations, read by pull sync"""
+    __tablename__ = "sync_changes"
+
+    id = Column(Integer, primary_key=True, index=True)  # Monotonic pull cursor
+    user_id = Column(Integer, ForeignKey("users.id"), nullable=False, index=True)
+    entity_type = Column(String, nullable=False)   # profile, vip
+    entity_id = Column(Integer, nullable=False)
+    operation = Column(String, nullable=False)     # upsert, delete
+    data_json = Column(Text, nullable=True)        # Entity snapshot for upserts
+    created_at = Column(DateTime, default=datetime.utcnow)
+
+
+class SyncBatchReceipt(Base):
+    """Receipt for an acknowledged sync push, keyed by client idempotency key"""
+    __tablename__ = "sync_batch_receipts"
+
+    __table_args__ = (
+        # Keys are only unique per account; two accounts on one device share ANDROID_ID
+        Index("uq_sync_batch_receipts_user_key", "user_id", "idempotency_key", unique=True),
+    )
+
+    id = Column(Integer, primary_key=True, index=True)
+    user_id = Column(Integer, ForeignKey("users.id"), nullable=False)
+    idempotency_key = Column(String, nullable=False)
+    synced_count = Column(Integer, default=0)
+    created_at = Column(DateTime, default=datetime.utcnow)
+
+
 class SyncQueue(Base):
     """Queue for pending sync operations"""
     __tablename__ = "sync_queue"
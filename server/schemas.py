@@ -66,6 +66,17 @@ class ProfileResponse(BaseModel):
         from_attributes = True
 
 
+class ProfileBatchItem(ProfileCreate):
+    """Profile upsert inside a batch; id is the server ID for updates"""
+    client_id: str
+    id: Optional[int] = None
+
+
+class ProfileBatchRequest(BaseModel):
+    """Schema for batch profile upsert"""
+    items: List[ProfileBatchItem]
+
+
 # ============================================
 # VIP SCHEMAS
 # ============================================
@@ -92,6 +103,32 @@ class VIPResponse(BaseModel):
         from_attributes = True
 
 
+class VIPBatchItem(VIPCreate):
+    """VIP upsert inside a batch; id is the server ID for updates"""
+    client_id: str
+    id: Optional[int] = None
+
+
+class VIPBatchRequest(BaseModel):
+    """Schema for batch VIP upsert and delete"""
+    items: List[VIPBatchItem] = []
+    deleted_ids: List[int] = []
+
+
+class BatchItemResult(BaseModel):
+    """Outcome of one batch item, mapped back to the client by client_id"""
+    client_id: str
+    id: Optional[int] = None
+    status: str                     # ok, rejected
+    detail: Optional[str] = None
+
+
+class BatchResponse(BaseModel):
+    """Schema for batch upsert response"""
+    success: bool
+    results: List[BatchItemResult]
+
+
 # ============================================
 # SYNC SCHEMAS
 # ============================================
@@ -99,6 +136,7 @@ class VIPResponse(BaseModel):
 class SyncPushRequest(BaseModel):
     """Schema for sync push request"""
     items: List[Dict[str, Any]]
+    install_id: Optional[str] = None   # Client database the item local_ids belong to
     device_timestamp: str
 
 
@@ -109,6 +147,15 @@ class SyncPushResponse(BaseModel):
     server_timestamp: str
 
 
+class SyncPullResponse(BaseModel):
+    """Schema for sync pull response, one keyset page of changes"""
+    success: bool
+    items: List[Dict[str, Any]]
+    next_cursor: Optional[str]
+    has_more: bool
+    server_timestamp: str
+
+
 # ============================================
 # RECOMMENDATION SCHEMAS
 # ============================================